@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound;
+
+/**
+ * The Bus interface is an abstraction for a group of Sounds and Music that
+ * share a volume and can be muted together.  Every Sound and Music is routed
+ * to exactly one Bus, which is mixed into the master output with the global
+ * volume.  Buses should only be retrieved via
+ * <code>TinySound.getBus()</code>.
+ * 
+ * @author Finn Kuusisto
+ */
+public interface Bus {
+
+	/**
+	 * Name of the Bus Music is routed to by default.
+	 */
+	public static final String MUSIC = "music";
+	
+	/**
+	 * Name of the Bus Sounds are routed to by default.
+	 */
+	public static final String SFX = "sfx";
+	
+	/**
+	 * Name of the Bus intended for user interface Sounds.
+	 */
+	public static final String UI = "ui";
+	
+	/**
+	 * Name of the Bus intended for speech.
+	 */
+	public static final String VOICE = "voice";
+	
+	/**
+	 * Get the name of this Bus.
+	 * @return name of this Bus
+	 */
+	public String getName();
+	
+	/**
+	 * Get the volume of this Bus.
+	 * @return volume of this Bus
+	 */
+	public double getVolume();
+	
+	/**
+	 * Set the volume of this Bus.  Negative values will be ignored.
+	 * @param volume the desired volume of this Bus
+	 */
+	public void setVolume(double volume);
+	
+	/**
+	 * Determine if this Bus is muted.
+	 * @return true if this Bus is muted
+	 */
+	public boolean isMuted();
+	
+	/**
+	 * Set whether this Bus is muted.  Sounds and Music on a muted Bus keep
+	 * playing silently, so they are where they should be when it is unmuted,
+	 * but they are not mixed.
+	 * @param muted whether this Bus should be muted
+	 */
+	public void setMuted(boolean muted);
+	
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound;
+
+/**
+ * The Configuration class holds the settings TinySound is initialized with.
+ * Create one, change whichever settings are needed and pass it to
+ * <code>TinySound.init()</code>.  Changing a Configuration after TinySound has
+ * been initialized with it has no effect.
+ * 
+ * @author Finn Kuusisto
+ */
+public class Configuration {
+	
+	private UpdateMode updateMode;
+	private double latency;
+	private int lineBufferFrames;
+	private int blockFrames;
+	private javax.sound.sampled.Mixer.Info mixerInfo;
+	
+	/**
+	 * Construct a new Configuration with the default settings: timed updates,
+	 * 25ms latency, the output line's default buffer size, blocks of 512
+	 * frames and the first Mixer that can provide an output line.
+	 */
+	public Configuration() {
+		this.updateMode = UpdateMode.TIMED;
+		this.latency = 25.0;
+		this.lineBufferFrames = 0;
+		this.blockFrames = 512;
+		this.mixerInfo = null;
+	}
+	
+	/**
+	 * Get how the update thread decides when to mix more audio.
+	 * @return the update mode
+	 */
+	public UpdateMode getUpdateMode() {
+		return this.updateMode;
+	}
+	
+	/**
+	 * Set how the update thread decides when to mix more audio.  Null values
+	 * will be ignored.
+	 * @param updateMode the update mode to set
+	 */
+	public void setUpdateMode(UpdateMode updateMode) {
+		if (updateMode != null) {
+			this.updateMode = updateMode;
+		}
+	}
+	
+	/**
+	 * Get the target latency in milliseconds.
+	 * @return the target latency
+	 */
+	public double getLatency() {
+		return this.latency;
+	}
+	
+	/**
+	 * Set the target latency in milliseconds.  With timed updates this is the
+	 * most the update thread may fall behind before audio is skipped to catch
+	 * up.  With pull updates this is the size of the output line's buffer,
+	 * unless that is set separately.  When rendering ahead this is how much
+	 * audio is mixed ahead of the output, and also the size of the output
+	 * line's buffer unless that is set separately.  Values that are not
+	 * positive will be ignored.
+	 * @param latency the target latency to set
+	 */
+	public void setLatency(double latency) {
+		if (latency > 0.0) {
+			this.latency = latency;
+		}
+	}
+	
+	/**
+	 * Get the target latency in frames.
+	 * @return the target latency in frames, at least 1
+	 */
+	public int getLatencyFrames() {
+		int frames = (int)((TinySound.FORMAT.getFrameRate() / 1000) *
+				this.latency);
+		return Math.max(1, frames);
+	}
+	
+	/**
+	 * Get the size of the output line's buffer in frames.
+	 * @return the line buffer size, 0 to use the default
+	 */
+	public int getLineBufferFrames() {
+		return this.lineBufferFrames;
+	}
+	
+	/**
+	 * Set the size of the output line's buffer in frames.  Set 0 for the
+	 * line's default with timed updates, or the target latency otherwise.
+	 * Negative values will be ignored.
+	 * @param lineBufferFrames the line buffer size to set
+	 */
+	public void setLineBufferFrames(int lineBufferFrames) {
+		if (lineBufferFrames >= 0) {
+			this.lineBufferFrames = lineBufferFrames;
+		}
+	}
+	
+	/**
+	 * Get the number of frames mixed at a time.
+	 * @return the render block size in frames
+	 */
+	public int getBlockFrames() {
+		return this.blockFrames;
+	}
+	
+	/**
+	 * Set the number of frames mixed at a time.  Volume and pan changes are
+	 * ramped over one block and pull updates render at least one block at a
+	 * time, so smaller blocks react faster at a higher CPU cost.  Values that
+	 * are not positive will be ignored.
+	 * @param blockFrames the render block size to set
+	 */
+	public void setBlockFrames(int blockFrames) {
+		if (blockFrames > 0) {
+			this.blockFrames = blockFrames;
+		}
+	}
+	
+	/**
+	 * Get the Mixer the output line is opened on.
+	 * @return the Mixer.Info of the Mixer, null to use the first Mixer that
+	 * can provide an output line
+	 */
+	public javax.sound.sampled.Mixer.Info getMixerInfo() {
+		return this.mixerInfo;
+	}
+	
+	/**
+	 * Set the Mixer the output line is opened on.  This should only be used by
+	 * those very familiar with the Java Sound API.
+	 * @param mixerInfo the Mixer.Info of the Mixer, null to use the first
+	 * Mixer that can provide an output line
+	 */
+	public void setMixerInfo(javax.sound.sampled.Mixer.Info mixerInfo) {
+		this.mixerInfo = mixerInfo;
+	}
+	
+	/**
+	 * Make a copy of this Configuration.
+	 * @return the copy
+	 */
+	public Configuration copy() {
+		Configuration copy = new Configuration();
+		copy.updateMode = this.updateMode;
+		copy.latency = this.latency;
+		copy.lineBufferFrames = this.lineBufferFrames;
+		copy.blockFrames = this.blockFrames;
+		copy.mixerInfo = this.mixerInfo;
+		return copy;
+	}
+	
+}
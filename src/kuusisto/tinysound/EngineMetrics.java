@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound;
+
+/**
+ * The EngineMetrics class is a snapshot of the metrics of the TinySound engine
+ * at one point in time.  Counters only ever go up, so the difference between
+ * two snapshots gives the activity in between.  EngineMetrics should only be
+ * retrieved via <code>TinySound.getMetrics()</code>.
+ * 
+ * @author Finn Kuusisto
+ * @see EngineMetricsMXBean
+ */
+public final class EngineMetrics {
+	
+	private final long blocksRendered;
+	private final long framesRendered;
+	private final long framesSkipped;
+	private final long underruns;
+	private final long totalRenderNanos;
+	private final long maxRenderNanos;
+	private final long[] renderTimeHistogram;
+	private final long[] renderTimeBucketBounds;
+	private final int activeSounds;
+	private final int activeMusic;
+	private final int commandQueueDepth;
+	private final int eventQueueDepth;
+	private final long droppedEvents;
+	
+	/**
+	 * Construct a new EngineMetrics snapshot of the given metrics.
+	 * @param metrics the live metrics
+	 */
+	public EngineMetrics(EngineMetricsMXBean metrics) {
+		this.blocksRendered = metrics.getBlocksRendered();
+		this.framesRendered = metrics.getFramesRendered();
+		this.framesSkipped = metrics.getFramesSkipped();
+		this.underruns = metrics.getUnderruns();
+		this.totalRenderNanos = metrics.getTotalRenderNanos();
+		this.maxRenderNanos = metrics.getMaxRenderNanos();
+		this.renderTimeHistogram = metrics.getRenderTimeHistogram();
+		this.renderTimeBucketBounds = metrics.getRenderTimeBucketBounds();
+		this.activeSounds = metrics.getActiveSounds();
+		this.activeMusic = metrics.getActiveMusic();
+		this.commandQueueDepth = metrics.getCommandQueueDepth();
+		this.eventQueueDepth = metrics.getEventQueueDepth();
+		this.droppedEvents = metrics.getDroppedEvents();
+	}
+	
+	/**
+	 * Get the number of blocks mixed.
+	 * @return number of blocks mixed
+	 */
+	public long getBlocksRendered() {
+		return this.blocksRendered;
+	}
+	
+	/**
+	 * Get the number of frames mixed.
+	 * @return number of frames mixed
+	 */
+	public long getFramesRendered() {
+		return this.framesRendered;
+	}
+	
+	/**
+	 * Get the number of frames skipped because the update thread fell behind.
+	 * Skipped audio is never heard.
+	 * @return number of frames skipped
+	 */
+	public long getFramesSkipped() {
+		return this.framesSkipped;
+	}
+	
+	/**
+	 * Get the number of times the output line ran out of audio.
+	 * @return number of underruns
+	 */
+	public long getUnderruns() {
+		return this.underruns;
+	}
+	
+	/**
+	 * Get the total time spent mixing.
+	 * @return total mixing time in nanoseconds
+	 */
+	public long getTotalRenderNanos() {
+		return this.totalRenderNanos;
+	}
+	
+	/**
+	 * Get the longest time spent mixing a single read.
+	 * @return longest mixing time in nanoseconds
+	 */
+	public long getMaxRenderNanos() {
+		return this.maxRenderNanos;
+	}
+	
+	/**
+	 * Get the number of reads whose mixing time fell into each bucket of the
+	 * render time histogram.
+	 * @return count of each histogram bucket
+	 * @see #getRenderTimeBucketBounds()
+	 */
+	public long[] getRenderTimeHistogram() {
+		return this.renderTimeHistogram.clone();
+	}
+	
+	/**
+	 * Get the exclusive upper bound of each bucket of the render time
+	 * histogram.  The last bucket has no bound and holds everything longer.
+	 * @return upper bounds in nanoseconds
+	 */
+	public long[] getRenderTimeBucketBounds() {
+		return this.renderTimeBucketBounds.clone();
+	}
+	
+	/**
+	 * Get the number of Sounds that were playing in the last block.
+	 * @return number of playing Sounds
+	 */
+	public int getActiveSounds() {
+		return this.activeSounds;
+	}
+	
+	/**
+	 * Get the number of Music that were playing in the last block.
+	 * @return number of playing Music
+	 */
+	public int getActiveMusic() {
+		return this.activeMusic;
+	}
+	
+	/**
+	 * Get the number of changes that were waiting to be applied at the start
+	 * of the last read.
+	 * @return command queue depth
+	 */
+	public int getCommandQueueDepth() {
+		return this.commandQueueDepth;
+	}
+	
+	/**
+	 * Get the approximate number of events that were waiting to be delivered
+	 * to listeners asynchronously.
+	 * @return event queue depth
+	 */
+	public int getEventQueueDepth() {
+		return this.eventQueueDepth;
+	}
+	
+	/**
+	 * Get the number of events dropped because the asynchronous event queue
+	 * was full.
+	 * @return number of dropped events
+	 */
+	public long getDroppedEvents() {
+		return this.droppedEvents;
+	}
+	
+}
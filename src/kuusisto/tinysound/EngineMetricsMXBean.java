@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound;
+
+/**
+ * The EngineMetricsMXBean interface is the JMX management interface for the
+ * live metrics of the TinySound engine.  While TinySound is initialized it is
+ * registered with the platform MBeanServer as
+ * {@value #OBJECT_NAME}.
+ * 
+ * @author Finn Kuusisto
+ * @see EngineMetrics
+ */
+public interface EngineMetricsMXBean {
+
+	/**
+	 * The name the metrics are registered with the platform MBeanServer as.
+	 */
+	public static final String OBJECT_NAME =
+		"kuusisto.tinysound:type=EngineMetrics";
+	
+	/**
+	 * Get the number of blocks mixed.
+	 * @return number of blocks mixed
+	 */
+	public long getBlocksRendered();
+	
+	/**
+	 * Get the number of frames mixed.
+	 * @return number of frames mixed
+	 */
+	public long getFramesRendered();
+	
+	/**
+	 * Get the number of frames skipped because the update thread fell behind.
+	 * Skipped audio is never heard.
+	 * @return number of frames skipped
+	 */
+	public long getFramesSkipped();
+	
+	/**
+	 * Get the number of times the output line ran out of audio.
+	 * @return number of underruns
+	 */
+	public long getUnderruns();
+	
+	/**
+	 * Get the total time spent mixing.
+	 * @return total mixing time in nanoseconds
+	 */
+	public long getTotalRenderNanos();
+	
+	/**
+	 * Get the longest time spent mixing a single read.
+	 * @return longest mixing time in nanoseconds
+	 */
+	public long getMaxRenderNanos();
+	
+	/**
+	 * Get the number of reads whose mixing time fell into each bucket of the
+	 * render time histogram.
+	 * @return count of each histogram bucket
+	 * @see #getRenderTimeBucketBounds()
+	 */
+	public long[] getRenderTimeHistogram();
+	
+	/**
+	 * Get the exclusive upper bound of each bucket of the render time
+	 * histogram.  The last bucket has no bound and holds everything longer.
+	 * @return upper bounds in nanoseconds
+	 */
+	public long[] getRenderTimeBucketBounds();
+	
+	/**
+	 * Get the number of Sounds that were playing in the last block.
+	 * @return number of playing Sounds
+	 */
+	public int getActiveSounds();
+	
+	/**
+	 * Get the number of Music that were playing in the last block.
+	 * @return number of playing Music
+	 */
+	public int getActiveMusic();
+	
+	/**
+	 * Get the number of changes that were waiting to be applied at the start
+	 * of the last read.
+	 * @return command queue depth
+	 */
+	public int getCommandQueueDepth();
+	
+	/**
+	 * Get the approximate number of events waiting to be delivered to
+	 * listeners asynchronously.
+	 * @return event queue depth
+	 */
+	public int getEventQueueDepth();
+	
+	/**
+	 * Get the number of events dropped because the asynchronous event queue
+	 * was full.
+	 * @return number of dropped events
+	 */
+	public long getDroppedEvents();
+	
+}
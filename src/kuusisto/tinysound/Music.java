@@ -57,6 +57,39 @@ public interface Music {
 	 */
 	public void play(boolean loop, double volume, double pan);
 	
+	/**
+	 * Play this Music starting exactly on the given engine frame, so it lines
+	 * up with other audio to the sample, and loop if specified.  Frames that
+	 * have already been mixed mean right away.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this Music should loop
+	 * @see TinySound#getEngineFrame()
+	 */
+	public void playAt(long engineFrame, boolean loop);
+	
+	/**
+	 * Play this Music starting exactly on the given engine frame at the
+	 * specified volume, and loop if specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this Music should loop
+	 * @param volume the volume to play the this Music
+	 * @see TinySound#getEngineFrame()
+	 */
+	public void playAt(long engineFrame, boolean loop, double volume);
+	
+	/**
+	 * Play this Music starting exactly on the given engine frame at the
+	 * specified volume and pan, and loop if specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this Music should loop
+	 * @param volume the volume to play the this Music
+	 * @param pan the pan at which to play this Music [-1.0,1.0], values outside
+	 * the valid range will be ignored
+	 * @see TinySound#getEngineFrame()
+	 */
+	public void playAt(long engineFrame, boolean loop, double volume,
+			double pan);
+	
 	/**
 	 * Stop playing this Music and set its position to the beginning.
 	 */
@@ -169,6 +202,22 @@ public interface Music {
 	 */
 	public void setPan(double pan);
 	
+	/**
+	 * Get the Bus this Music is played on.  Music is played on the
+	 * {@link Bus#MUSIC} Bus unless set otherwise.
+	 * @return the Bus of this Music
+	 */
+	public Bus getBus();
+	
+	/**
+	 * Set the Bus this Music is played on.
+	 * @param bus the Bus to play this Music on
+	 * @throws IllegalArgumentException if the Bus was not retrieved from the
+	 * same TinySound system
+	 * @see TinySound#getBus(String)
+	 */
+	public void setBus(Bus bus);
+	
 	/**
 	 * Unload this Music from the system.  Attempts to use this Music after
 	 * unloading will result in error.
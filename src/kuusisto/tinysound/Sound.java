@@ -54,6 +54,81 @@ public interface Sound {
 	 */
 	public void play(double volume, double pan);
 	
+	/**
+	 * Plays this Sound with a specified volume, pan and priority.  The
+	 * priority is used to decide which Sounds keep playing when too many are
+	 * played at once.
+	 * @param volume the volume at which to play this Sound
+	 * @param pan the pan value to play this Sound [-1.0,1.0], values outside
+	 * the valid range will assume no panning (0.0)
+	 * @param priority the priority of this play, higher values are more
+	 * important
+	 * @see TinySound#setMaxVoices(int)
+	 */
+	public void play(double volume, double pan, int priority);
+	
+	/**
+	 * Plays this Sound starting exactly on the given engine frame, so it lines
+	 * up with other audio to the sample.  Frames that have already been mixed
+	 * mean right away.
+	 * @param engineFrame the engine frame to start on
+	 * @see TinySound#getEngineFrame()
+	 */
+	public void playAt(long engineFrame);
+	
+	/**
+	 * Plays this Sound starting exactly on the given engine frame with a
+	 * specified volume.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this Sound
+	 * @see TinySound#getEngineFrame()
+	 */
+	public void playAt(long engineFrame, double volume);
+	
+	/**
+	 * Plays this Sound starting exactly on the given engine frame with a
+	 * specified volume and pan.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this Sound
+	 * @param pan the pan value to play this Sound [-1.0,1.0], values outside
+	 * the valid range will assume no panning (0.0)
+	 * @see TinySound#getEngineFrame()
+	 */
+	public void playAt(long engineFrame, double volume, double pan);
+	
+	/**
+	 * Plays this Sound starting exactly on the given engine frame with a
+	 * specified volume, pan and priority.  A Sound waiting for its frame
+	 * counts toward the maximum number of Sounds playing at once.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this Sound
+	 * @param pan the pan value to play this Sound [-1.0,1.0], values outside
+	 * the valid range will assume no panning (0.0)
+	 * @param priority the priority of this play, higher values are more
+	 * important
+	 * @see TinySound#getEngineFrame()
+	 * @see TinySound#setMaxVoices(int)
+	 */
+	public void playAt(long engineFrame, double volume, double pan,
+			int priority);
+	
+	/**
+	 * Get the Bus this Sound is played on.  Sounds are played on the
+	 * {@link Bus#SFX} Bus unless set otherwise.
+	 * @return the Bus of this Sound
+	 */
+	public Bus getBus();
+	
+	/**
+	 * Set the Bus this Sound is played on.  This only affects later plays of
+	 * this Sound.
+	 * @param bus the Bus to play this Sound on
+	 * @throws IllegalArgumentException if the Bus was not retrieved from the
+	 * same TinySound system
+	 * @see TinySound#getBus(String)
+	 */
+	public void setBus(Bus bus);
+	
 	/**
 	 * Stops this Sound from playing.  Note that if this Sound was played
 	 * repeatedly in an overlapping fashion, all instances of this Sound still
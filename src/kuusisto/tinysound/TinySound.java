@@ -34,9 +34,28 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -46,15 +65,20 @@ import javax.sound.sampled.SourceDataLine;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 import kuusisto.tinysound.event.SoundEventListener;
+import kuusisto.tinysound.internal.AssetCache;
 import kuusisto.tinysound.internal.ByteList;
 import kuusisto.tinysound.internal.EventHandler;
 import kuusisto.tinysound.internal.MemMusic;
 import kuusisto.tinysound.internal.MemSound;
 import kuusisto.tinysound.internal.Mixer;
+import kuusisto.tinysound.internal.PcmCache;
 import kuusisto.tinysound.internal.StreamInfo;
 import kuusisto.tinysound.internal.StreamMusic;
 import kuusisto.tinysound.internal.StreamSound;
 import kuusisto.tinysound.internal.UpdateRunner;
+import kuusisto.tinysound.internal.WavWriter;
+import kuusisto.tinysound.output.AudioSink;
+import kuusisto.tinysound.output.LineSink;
 
 /**
  * TinySound is the main class of the TinySound system. In order to use the
@@ -82,45 +106,68 @@ public class TinySound {
 
     // the system has only one mixer for both music and sounds
     private Mixer mixer;
-    // need a line to the speakers
-    private SourceDataLine outLine;
+    // need somewhere to send the mixed audio, usually a line to the speakers
+    private AudioSink sink;
     // see if the system has been initialized
     private static boolean inited = false;
     // auto-updater for the system
     private UpdateRunner autoUpdater;
-    // counter for unique sound IDs
-    private int soundCount = 0;
+    // thread running the auto-updater
+    private Thread updateThread;
+    // scratch buffer for rendering offline, null unless in offline mode
+    private byte[] renderBuffer;
+    // counter for unique sound IDs, sounds may be loaded on any thread
+    private final AtomicInteger soundCount = new AtomicInteger();
+    // Executor for asynchronous loading, null to use the loader pool
+    private volatile Executor loadExecutor;
+    // default Executor for asynchronous loading
+    private final ExecutorService loaderPool;
+    // decoded audio data shared by everything loaded from the same URL
+    private final AssetCache assetCache = new AssetCache(0);
+    // converted audio data kept on disk, null if there is no cache directory
+    private volatile PcmCache pcmCache;
     // TinySoundListener manager
     private EventHandler listenersManager;
 
     // prevent to use any constructors
-    private TinySound(SourceDataLine outLine) {
-	this.outLine = outLine;
+    private TinySound(AudioSink sink) {
+	this.sink = sink;
+	// one loader per processor, started on demand and let go when idle
+	int loaders = Runtime.getRuntime().availableProcessors();
+	ThreadPoolExecutor pool = new ThreadPoolExecutor(loaders, loaders, 5L,
+		TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+		new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "TinySound loader");
+			thread.setDaemon(true);
+			return thread;
+		    }
+		});
+	pool.allowCoreThreadTimeOut(true);
+	this.loaderPool = pool;
     }
 
     /**
      * Initialize Tinysound. This must be called before loading audio.
      */
     public static TinySound init() throws IllegalStateException, UnsupportedOperationException, NullPointerException {
-	if (TinySound.inited) {
-	    throw new IllegalStateException("TinySound already initialized");
-	}
-	// try to open a line to the speakers
-	DataLine.Info info = new DataLine.Info(SourceDataLine.class, TinySound.FORMAT);
-	if (!AudioSystem.isLineSupported(info)) {
-	    throw new UnsupportedOperationException("Unsupported output format");
-	}
-	SourceDataLine outLine = TinySound.tryGetLine();
-	if (outLine == null) {
-	    throw new NullPointerException("Output line unavailable!");
-	}
-
-	// start the line and finish initialization
-	TinySound instance = new TinySound(outLine);
-	outLine.start();
-	instance.finishInit();
+	return TinySound.init(UpdateMode.TIMED);
+    }
 
-	return instance;
+    /**
+     * Initialize Tinysound with a specific way of deciding when to mix more
+     * audio for the output line. This must be called before loading audio.
+     * 
+     * @param mode how the update thread decides when to mix more audio
+     * @see UpdateMode
+     */
+    public static TinySound init(UpdateMode mode) throws IllegalStateException, UnsupportedOperationException, NullPointerException {
+	Configuration config = new Configuration();
+	config.setUpdateMode(mode);
+	TinySound.checkNotInited();
+	AudioSink sink = (mode == UpdateMode.OFFLINE) ? null : new LineSink(TinySound.getDefaultLine(config));
+	return TinySound.start(sink, config);
     }
 
     /**
@@ -138,43 +185,214 @@ public class TinySound {
      */
     public static TinySound init(javax.sound.sampled.Mixer.Info info)
 	    throws IllegalStateException, LineUnavailableException, SecurityException, IllegalArgumentException {
+	Configuration config = new Configuration();
+	config.setMixerInfo(info);
+	TinySound.checkNotInited();
+	return TinySound.start(new LineSink(TinySound.getLine(config)), config);
+    }
+
+    /**
+     * Initialize TinySound with the given settings, such as the latency, the
+     * output line's buffer size and the render block size. This must be called
+     * before loading audio.
+     * 
+     * @param config the settings to initialize with
+     * @throws LineUnavailableException if a Mixer was given in the settings and
+     *                                  a Line is not available from it
+     * @throws SecurityException        if the specified Mixer or Line are
+     *                                  unavailable due to security restrictions
+     * @throws IllegalArgumentException if the specified Mixer is not installed on
+     *                                  the system
+     * @throws NullPointerException     if no Mixer was given in the settings and
+     *                                  no output line is available
+     * @see Configuration
+     */
+    public static TinySound init(Configuration config)
+	    throws IllegalStateException, UnsupportedOperationException, NullPointerException, LineUnavailableException,
+	    SecurityException, IllegalArgumentException {
+	// later changes to the settings shouldn't affect us
+	config = config.copy();
+	TinySound.checkNotInited();
+	AudioSink sink;
+	if (config.getUpdateMode() == UpdateMode.OFFLINE) {
+	    sink = null;
+	} else {
+	    sink = new LineSink(
+		    (config.getMixerInfo() == null) ? TinySound.getDefaultLine(config) : TinySound.getLine(config));
+	}
+	return TinySound.start(sink, config);
+    }
+
+    /**
+     * Initialize TinySound to send its audio to the given sink rather than a
+     * line to the speakers, such as a NullSink to run without audio hardware.
+     * This must be called before loading audio.
+     * 
+     * @param sink the sink to send audio to, not yet started
+     * @see AudioSink
+     */
+    public static TinySound init(AudioSink sink) throws IllegalStateException {
+	return TinySound.init(sink, new Configuration());
+    }
+
+    /**
+     * Initialize TinySound to send its audio to the given sink rather than a
+     * line to the speakers, with the given settings. The settings for the
+     * output line are ignored, the sink decides its own buffer size. This must
+     * be called before loading audio.
+     * 
+     * @param sink   the sink to send audio to, not yet started
+     * @param config the settings to initialize with
+     * @throws IllegalArgumentException if the settings are for offline mode,
+     *                                  which has no output
+     * @see AudioSink
+     */
+    public static TinySound init(AudioSink sink, Configuration config)
+	    throws IllegalStateException, IllegalArgumentException {
+	if (config.getUpdateMode() == UpdateMode.OFFLINE) {
+	    throw new IllegalArgumentException("Offline mode has no output");
+	}
+	// later changes to the settings shouldn't affect us
+	config = config.copy();
+	TinySound.checkNotInited();
+	return TinySound.start(sink, config);
+    }
+
+    /**
+     * Make sure TinySound is not already initialized.
+     * 
+     * @throws IllegalStateException if TinySound is already initialized
+     */
+    private static void checkNotInited() throws IllegalStateException {
 	if (TinySound.inited) {
 	    throw new IllegalStateException("TinySound already initialized");
 	}
+    }
+
+    /**
+     * Open a line to the speakers on the first Mixer that can provide one.
+     * 
+     * @param config the settings to open the line with
+     * @return an opened SourceDataLine to the speakers
+     * @throws UnsupportedOperationException if the output format is unsupported
+     * @throws NullPointerException          if no line is available
+     */
+    private static SourceDataLine getDefaultLine(Configuration config)
+	    throws UnsupportedOperationException, NullPointerException {
 	// try to open a line to the speakers
-	javax.sound.sampled.Mixer mixer = AudioSystem.getMixer(info);
+	DataLine.Info info = new DataLine.Info(SourceDataLine.class, TinySound.FORMAT);
+	if (!AudioSystem.isLineSupported(info)) {
+	    throw new UnsupportedOperationException("Unsupported output format");
+	}
+	SourceDataLine outLine = TinySound.tryGetLine(TinySound.getLineBufferSize(config));
+	if (outLine == null) {
+	    throw new NullPointerException("Output line unavailable!");
+	}
+	return outLine;
+    }
+
+    /**
+     * Open a line to the speakers on the Mixer given in the settings.
+     * 
+     * @param config the settings to open the line with
+     * @return an opened SourceDataLine to the speakers
+     * @throws LineUnavailableException if a Line is not available from the Mixer
+     */
+    private static SourceDataLine getLine(Configuration config) throws LineUnavailableException {
+	javax.sound.sampled.Mixer mixer = AudioSystem.getMixer(config.getMixerInfo());
 	DataLine.Info lineInfo = new DataLine.Info(SourceDataLine.class, TinySound.FORMAT);
 	SourceDataLine outLine = (SourceDataLine) mixer.getLine(lineInfo);
-	outLine.open(TinySound.FORMAT);
+	TinySound.openLine(outLine, TinySound.getLineBufferSize(config));
+	return outLine;
+    }
 
-	// start the line and finish initialization
-	TinySound instance = new TinySound(outLine);
-	outLine.start();
-	instance.finishInit();
+    /**
+     * Get the buffer size to open the output line with.
+     * 
+     * @param config the settings to open the line with
+     * @return the buffer size in bytes, -1 for the line's default
+     */
+    private static int getLineBufferSize(Configuration config) {
+	int frames = config.getLineBufferFrames();
+	// pulling or rendering ahead keeps the line full, so its buffer is the latency
+	if (frames <= 0 && config.getUpdateMode() != UpdateMode.TIMED) {
+	    frames = config.getLatencyFrames();
+	}
+	return (frames > 0) ? frames * TinySound.FORMAT.getFrameSize() : -1;
+    }
 
+    /**
+     * Open a line with the given buffer size.
+     * 
+     * @param line       the line to open
+     * @param bufferSize the buffer size in bytes, -1 for the line's default
+     * @throws LineUnavailableException if the line cannot be opened
+     */
+    private static void openLine(SourceDataLine line, int bufferSize) throws LineUnavailableException {
+	if (bufferSize > 0) {
+	    line.open(TinySound.FORMAT, bufferSize);
+	} else {
+	    line.open(TinySound.FORMAT);
+	}
+    }
+
+    /**
+     * Start the output and finish initialization.
+     * 
+     * @param sink   the output to send audio to, null in offline mode
+     * @param config the settings to initialize with
+     * @return the initialized TinySound
+     */
+    private static TinySound start(AudioSink sink, Configuration config) {
+	TinySound instance = new TinySound(sink);
+	if (sink != null) {
+	    sink.start();
+	}
+	instance.finishInit(config);
 	return instance;
     }
 
     /**
      * Initializes the mixer and updater, and marks TinySound as initialized.
+     * 
+     * @param config the settings to initialize with
      */
-    private void finishInit() {
+    private void finishInit(Configuration config) {
 	// initialize listener manager
 	this.listenersManager = new EventHandler();
 	// now initialize the mixer
 	this.mixer = new Mixer(this.listenersManager);
-	// initialize and start the updater
-	this.autoUpdater = new UpdateRunner(this.mixer, this.outLine);
-	Thread updateThread = new Thread(this.autoUpdater);
+	this.mixer.setBlockFrames(config.getBlockFrames());
+	if (this.sink == null) {
+	    // offline, audio is only mixed when asked to render
+	    this.renderBuffer = new byte[config.getBlockFrames() * TinySound.FORMAT.getFrameSize()];
+	    // so changes that fill up the queue before a render apply it themselves
+	    this.mixer.setReadLock(this);
+	} else {
+	    // initialize the updater
+	    this.autoUpdater = new UpdateRunner(this.mixer, this.sink, config);
+	    this.updateThread = new Thread(this.autoUpdater);
+	    try {
+		this.updateThread.setDaemon(true);
+		this.updateThread.setPriority(Thread.MAX_PRIORITY);
+	    } catch (Exception e) {
+	    }
+	}
+	// publish the metrics over JMX where it's available
 	try {
-	    updateThread.setDaemon(true);
-	    updateThread.setPriority(Thread.MAX_PRIORITY);
-	} catch (Exception e) {
+	    ManagementFactory.getPlatformMBeanServer().registerMBean(this.mixer.getMetrics(),
+		    new ObjectName(EngineMetricsMXBean.OBJECT_NAME));
+	} catch (JMException e) {
+	    // metrics are still available through getMetrics()
+	} catch (SecurityException e) {
+	    // not much we can do here
 	}
 	TinySound.inited = true;
-	updateThread.start();
-	// yield to potentially give the updater a chance
-	Thread.yield();
+	if (this.updateThread != null) {
+	    this.updateThread.start();
+	    // yield to potentially give the updater a chance
+	    Thread.yield();
+	}
     }
 
     /**
@@ -185,15 +403,52 @@ public class TinySound {
 	    throw new IllegalStateException("TinySound not initialized");
 	}
 	// stop the auto-updater if running
-	this.autoUpdater.stop();
+	if (this.autoUpdater != null) {
+	    this.autoUpdater.stop();
+	    // stopping the sink releases the updater if it's blocked writing
+	    this.sink.stop();
+	    // wait for it so nothing else is reading from the mixer
+	    try {
+		this.updateThread.join();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
 
 	// clear resources
 	this.autoUpdater = null;
-	this.outLine.stop();
-	this.outLine.flush();
-	this.mixer.clearMusic();
-	this.mixer.clearSounds();
+	this.updateThread = null;
+	if (this.sink != null) {
+	    this.sink.stop();
+	    this.sink.flush();
+	    this.sink.close();
+	    this.sink = null;
+	}
+	synchronized (this) {
+	    // wait out any render in progress
+	    this.renderBuffer = null;
+	    // nobody is reading anymore, so apply the changes right away, and
+	    // have anyone who fills up the queue meanwhile do the same
+	    this.mixer.setReadLock(this);
+	    this.mixer.processCommands();
+	    this.mixer.clearMusic();
+	    this.mixer.clearSounds();
+	    this.mixer.processCommands();
+	    this.mixer.shutdown();
+	}
 	this.mixer = null;
+	try {
+	    ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(EngineMetricsMXBean.OBJECT_NAME));
+	} catch (JMException e) {
+	    // it was never registered
+	} catch (SecurityException e) {
+	    // not much we can do here
+	}
+	// loads still queued will fail rather than find no mixer
+	this.loaderPool.shutdownNow();
+	this.assetCache.clear();
+	// deliver any events still waiting to be dispatched
+	this.listenersManager.shutdown();
 	this.listenersManager = null;
 
 	// and clear inited flag
@@ -210,6 +465,181 @@ public class TinySound {
 	return TinySound.inited;
     }
 
+    /**
+     * Get the engine clock, the number of frames of audio that have been mixed
+     * or skipped since initialization. Behind an output line it advances at
+     * real-time rate; in offline mode it only advances by the frames rendered.
+     * It can be read from any thread at any time.
+     * 
+     * @return the number of frames mixed or skipped since initialization
+     */
+    public long getEngineFrame() {
+	return this.mixer.getEngineFrame();
+    }
+
+    /**
+     * Get the number of frames the output has actually played since
+     * initialization, estimated from the output's frame position at the last
+     * update and the time since. It can be read from any thread at any time
+     * without locking. In offline mode this is the number of frames rendered.
+     * 
+     * @return the number of frames played since initialization
+     */
+    public long getFramesPlayed() {
+	if (this.sink == null) {
+	    // the rendered audio plus the silence the limiter put in
+	    return this.mixer.getOutputFrame() + this.mixer.getOutputSilence();
+	}
+	return this.mixer.getClock().getFramesPlayed();
+    }
+
+    /**
+     * Get the engine frame that is being heard right now, for keeping
+     * animation in sync with audio started with playAt. It trails the engine
+     * clock by the output latency and can be read from any thread at any time
+     * without locking. In offline mode this is the engine frame at the end of
+     * what has been rendered.
+     * 
+     * @return the engine frame being heard right now
+     * @see Sound#playAt(long)
+     */
+    public long getPlaybackFrame() {
+	if (this.sink == null) {
+	    return this.mixer.getOutputFrame();
+	}
+	return this.mixer.getClock().getPlaybackFrame();
+    }
+
+    /**
+     * Get the estimated output latency, how long it takes audio that has just
+     * been mixed to be heard. This includes anything mixed ahead, the limiter's
+     * look-ahead and the output's own buffer. It can be read from any thread at
+     * any time without locking. In offline mode it is only the limiter's
+     * look-ahead.
+     * 
+     * @return the estimated output latency in milliseconds
+     */
+    public double getOutputLatency() {
+	long frames = this.mixer.getEngineFrame() - this.getPlaybackFrame();
+	return Math.max(0, frames) * 1000.0 / TinySound.FORMAT.getFrameRate();
+    }
+
+    /**
+     * Determine if TinySound was initialized in offline mode, in which case
+     * audio is only mixed by the render methods.
+     * 
+     * @return true if TinySound is rendering offline
+     * @see UpdateMode#OFFLINE
+     */
+    public boolean isOffline() {
+	return this.renderBuffer != null;
+    }
+
+    /**
+     * Mix the next frames of audio into a buffer as fast as possible, filling it
+     * from its position up to its limit with little-endian, stereo, 16-bit PCM
+     * and advancing its position. The engine clock advances by the frames
+     * rendered, so loops and events happen exactly where they would in real
+     * time. Only available in offline mode.
+     * 
+     * @param buffer the buffer to fill
+     * @return the number of frames rendered
+     * @throws IllegalStateException if TinySound is not rendering offline
+     */
+    public synchronized int render(ByteBuffer buffer) throws IllegalStateException {
+	this.checkOffline();
+	int frameSize = TinySound.FORMAT.getFrameSize();
+	int numFrames = buffer.remaining() / frameSize;
+	int length = numFrames * frameSize;
+	if (buffer.hasArray()) {
+	    // mix straight into the backing array
+	    this.renderBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+	    buffer.position(buffer.position() + length);
+	} else {
+	    byte[] data = this.renderBuffer;
+	    for (int done = 0; done < length;) {
+		int chunk = Math.min(data.length, length - done);
+		this.renderBytes(data, 0, chunk);
+		buffer.put(data, 0, chunk);
+		done += chunk;
+	    }
+	}
+	return numFrames;
+    }
+
+    /**
+     * Mix the next frames of audio as fast as possible and write them to a
+     * stream as little-endian, stereo, 16-bit PCM. The engine clock advances by
+     * the frames rendered. Only available in offline mode.
+     * 
+     * @param out       the stream to write to
+     * @param numFrames the number of frames to render
+     * @throws IOException           if writing to the stream fails
+     * @throws IllegalStateException if TinySound is not rendering offline
+     */
+    public synchronized void render(OutputStream out, long numFrames) throws IOException, IllegalStateException {
+	this.checkOffline();
+	byte[] data = this.renderBuffer;
+	long length = numFrames * TinySound.FORMAT.getFrameSize();
+	for (long done = 0; done < length;) {
+	    int chunk = (int) Math.min(data.length, length - done);
+	    this.renderBytes(data, 0, chunk);
+	    out.write(data, 0, chunk);
+	    done += chunk;
+	}
+    }
+
+    /**
+     * Mix the next frames of audio as fast as possible and write them to a WAV
+     * file, replacing the file if it exists. The engine clock advances by the
+     * frames rendered. Only available in offline mode.
+     * 
+     * @param file      the WAV file to write
+     * @param numFrames the number of frames to render
+     * @throws IOException           if writing the file fails
+     * @throws IllegalStateException if TinySound is not rendering offline
+     */
+    public synchronized void render(File file, long numFrames) throws IOException, IllegalStateException {
+	this.checkOffline();
+	byte[] data = this.renderBuffer;
+	long length = numFrames * TinySound.FORMAT.getFrameSize();
+	WavWriter wav = new WavWriter(file, TinySound.FORMAT);
+	try {
+	    for (long done = 0; done < length;) {
+		int chunk = (int) Math.min(data.length, length - done);
+		this.renderBytes(data, 0, chunk);
+		wav.write(data, 0, chunk);
+		done += chunk;
+	    }
+	} finally {
+	    wav.close();
+	}
+    }
+
+    /**
+     * Make sure TinySound is rendering offline.
+     * 
+     * @throws IllegalStateException if TinySound is not rendering offline
+     */
+    private void checkOffline() throws IllegalStateException {
+	if (this.renderBuffer == null) {
+	    throw new IllegalStateException("TinySound not rendering offline");
+	}
+    }
+
+    /**
+     * Mix audio into a buffer, filling whatever the mixer runs out of with
+     * silence.
+     * 
+     * @param data   the buffer to mix into
+     * @param offset the start index to mix into
+     * @param length the number of bytes to fill, a whole number of frames
+     */
+    private void renderBytes(byte[] data, int offset, int length) {
+	int numBytesRead = this.mixer.read(data, offset, length);
+	Arrays.fill(data, offset + numBytesRead, offset + length, (byte) 0);
+    }
+
     /**
      * Get the global volume for all audio.
      * 
@@ -230,6 +660,177 @@ public class TinySound {
 	this.mixer.setVolume(volume);
     }
 
+    /**
+     * Get the maximum number of Sounds that can play at once.
+     * 
+     * @return the maximum number of Sounds that can play at once
+     */
+    public int getMaxVoices() {
+	return this.mixer.getMaxVoices();
+    }
+
+    /**
+     * Set the maximum number of Sounds that can play at once. When a Sound is
+     * played while this many are already playing, the stealing policy decides
+     * which one is stopped, or whether the new one is not played at all. Music
+     * does not count toward the limit. Values less than 1 remove the limit,
+     * which is the default.
+     * 
+     * @param maxVoices the maximum number of Sounds that can play at once
+     */
+    public void setMaxVoices(int maxVoices) {
+	this.mixer.setMaxVoices(maxVoices);
+    }
+
+    /**
+     * Get the policy used to choose which Sound to stop when too many are
+     * played at once.
+     * 
+     * @return the stealing policy
+     */
+    public StealingPolicy getStealingPolicy() {
+	return this.mixer.getStealingPolicy();
+    }
+
+    /**
+     * Set the policy used to choose which Sound to stop when too many are
+     * played at once. It starts at {@link StealingPolicy#OLDEST}.
+     * 
+     * @param policy the stealing policy to set
+     */
+    public void setStealingPolicy(StealingPolicy policy) {
+	this.mixer.setStealingPolicy(policy);
+    }
+
+    /**
+     * Get a snapshot of the metrics of the engine, such as how long mixing
+     * takes and how much audio has been skipped. The same metrics are
+     * published over JMX as {@value EngineMetricsMXBean#OBJECT_NAME}.
+     * 
+     * @return a snapshot of the engine metrics
+     */
+    public EngineMetrics getMetrics() {
+	return new EngineMetrics(this.mixer.getMetrics());
+    }
+
+    /**
+     * Get a Bus by name. The Buses {@link Bus#MUSIC}, {@link Bus#SFX},
+     * {@link Bus#UI} and {@link Bus#VOICE} are always available. Music is
+     * played on the music Bus and Sounds on the sfx Bus unless they are set to
+     * another.
+     * 
+     * @param name name of the Bus
+     * @return the Bus with the given name, null if there is none
+     */
+    public Bus getBus(String name) {
+	return this.mixer.getBus(name);
+    }
+
+    /**
+     * Get the pan law used to turn the pan of Sounds and Music into gains for
+     * the left and right channels.
+     * 
+     * @return the pan law
+     */
+    public PanLaw getPanLaw() {
+	return this.mixer.getPanLaw();
+    }
+
+    /**
+     * Set the pan law used to turn the pan of Sounds and Music into gains for
+     * the left and right channels. It starts at {@link PanLaw#LINEAR}.
+     * 
+     * @param panLaw the pan law to set
+     */
+    public void setPanLaw(PanLaw panLaw) {
+	this.mixer.setPanLaw(panLaw);
+    }
+
+    /**
+     * Determine if the output is limited.
+     * 
+     * @return true if the limiter is enabled
+     */
+    public boolean isLimiterEnabled() {
+	return this.mixer.isLimiterEnabled();
+    }
+
+    /**
+     * Set whether the output is limited. Without the limiter, output that goes
+     * over full scale when many Sounds stack up is hard-clipped. The limiter
+     * instead looks ahead and turns the whole mix down smoothly before loud
+     * peaks, at the cost of 2ms of extra latency, which getOutputLatency and
+     * getPlaybackFrame account for. Disabling it lets out the audio it is still
+     * holding back, so nothing is dropped. It is disabled by default.
+     * 
+     * @param enabled whether the limiter should be enabled
+     */
+    public void setLimiterEnabled(boolean enabled) {
+	this.mixer.setLimiterEnabled(enabled);
+    }
+
+    /**
+     * Get the level the limiter keeps the output under.
+     * 
+     * @return the limiter threshold as a fraction of full scale
+     */
+    public double getLimiterThreshold() {
+	return this.mixer.getLimiterThreshold();
+    }
+
+    /**
+     * Set the level the limiter keeps the output under, as a fraction of full
+     * scale. It starts at 1.0. Values outside of (0.0,1.0] will be ignored.
+     * 
+     * @param threshold the limiter threshold to set
+     */
+    public void setLimiterThreshold(double threshold) {
+	this.mixer.setLimiterThreshold(threshold);
+    }
+
+    /**
+     * Get how long the limiter takes to recover after a peak.
+     * 
+     * @return the limiter release time in milliseconds
+     */
+    public double getLimiterRelease() {
+	return this.mixer.getLimiterRelease();
+    }
+
+    /**
+     * Set how long the limiter takes to recover after a peak, in milliseconds.
+     * It starts at 100ms. Negative values will be ignored.
+     * 
+     * @param millis the limiter release time to set
+     */
+    public void setLimiterRelease(double millis) {
+	this.mixer.setLimiterRelease(millis);
+    }
+
+    /**
+     * Get the number of playing Sounds and Music needed before they are mixed
+     * in parallel.
+     * 
+     * @return the parallel mixing threshold, Integer.MAX_VALUE if disabled
+     */
+    public int getParallelMixThreshold() {
+	return this.mixer.getParallelThreshold();
+    }
+
+    /**
+     * Set the number of playing Sounds and Music needed before they are mixed
+     * in parallel. When at least this many are playing, they are split into
+     * chunks that are mixed on a pool with one thread per processor and then
+     * added together. Smaller mixes stay on the update thread, where they are
+     * cheaper. Values less than 1 disable parallel mixing, which is the
+     * default.
+     * 
+     * @param threshold the parallel mixing threshold to set
+     */
+    public void setParallelMixThreshold(int threshold) {
+	this.mixer.setParallelThreshold(threshold);
+    }
+
     /**
      * Load a Music by a resource name. The resource must be on the classpath for
      * this to work. This will store audio data in memory.
@@ -340,11 +941,15 @@ public class TinySound {
 	if (url == null) {
 	    throw new NullPointerException("url is null");
 	}
-	// get a valid stream of audio data
-	AudioInputStream audioStream = TinySound.getValidAudioStream(url);
-	
-	// try to read all the bytes
-	byte[][] data = TinySound.readAllBytes(audioStream);
+	// share the data if it's already loaded
+	if (!streamFromFile) {
+	    AssetCache.Entry cached = this.assetCache.acquire(url.toExternalForm());
+	    if (cached != null) {
+		return new MemMusic(cached, this.mixer);
+	    }
+	}
+	// decode it, or read it from the cache directory
+	byte[][] data = this.readAllBytes(url);
 	
 	// handle differently if streaming from a file
 	if (streamFromFile) {
@@ -352,7 +957,8 @@ public class TinySound {
 	    return new StreamMusic(info.URL, info.NUM_BYTES_PER_CHANNEL, this.mixer);
 	}
 	// construct the Music object and register it with the mixer
-	return new MemMusic(data[0], data[1], this.mixer);
+	AssetCache.Entry cached = this.assetCache.put(url.toExternalForm(), data[0], data[1]);
+	return new MemMusic(cached, this.mixer);
     }
     
     /**
@@ -544,23 +1150,26 @@ public class TinySound {
 	if (url == null) {
 	    throw new NullPointerException("url is null");
 	}
-	// get a valid stream of audio data
-	AudioInputStream audioStream = TinySound.getValidAudioStream(url);
-	
-	// try to read all the bytes
-	byte[][] data = TinySound.readAllBytes(audioStream);
+	// share the data if it's already loaded
+	if (!streamFromFile) {
+	    AssetCache.Entry cached = this.assetCache.acquire(url.toExternalForm());
+	    if (cached != null) {
+		return new MemSound(cached, this.mixer, this.soundCount.incrementAndGet());
+	    }
+	}
+	// decode it, or read it from the cache directory
+	byte[][] data = this.readAllBytes(url);
 	
 	// handle differently if streaming from file
 	if (streamFromFile) {
 	    StreamInfo info = TinySound.createFileStream(data);
 	    
 	    // try to create it
-	    this.soundCount++;
-	    return new StreamSound(info.URL, info.NUM_BYTES_PER_CHANNEL, this.mixer, this.soundCount);
+	    return new StreamSound(info.URL, info.NUM_BYTES_PER_CHANNEL, this.mixer, this.soundCount.incrementAndGet());
 	}
 	// construct the Sound object
-	this.soundCount++;
-	return new MemSound(data[0], data[1], this.mixer, this.soundCount);
+	AssetCache.Entry cached = this.assetCache.put(url.toExternalForm(), data[0], data[1]);
+	return new MemSound(cached, this.mixer, this.soundCount.incrementAndGet());
     }
     
     /**
@@ -634,12 +1243,355 @@ public class TinySound {
 	// handle differently if streaming from a file
 	if (streamFromFile) {
 	    StreamInfo info = TinySound.createFileStream(data);
-	    this.soundCount++;
-	    return new StreamSound(info.URL, info.NUM_BYTES_PER_CHANNEL, this.mixer, this.soundCount);
+	    return new StreamSound(info.URL, info.NUM_BYTES_PER_CHANNEL, this.mixer, this.soundCount.incrementAndGet());
 	}
 	
 	// construct the Music object and register it with the mixer
-	return new MemSound(data[0], data[1], this.mixer, this.soundCount);
+	return new MemSound(data[0], data[1], this.mixer, this.soundCount.incrementAndGet());
+    }
+
+    /**
+     * Load a Music by a resource name in the background. The resource must be
+     * on the classpath for this to work. This will store audio data in memory.
+     * 
+     * @param name name of the Music resource
+     * @return a future completed with the Music, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Music> loadMusicAsync(String name) {
+	return this.loadMusicAsync(name, false);
+    }
+
+    /**
+     * Load a Music by a resource name in the background. The resource must be
+     * on the classpath for this to work.
+     * 
+     * @param name           name of the Music resource
+     * @param streamFromFile true if this Music should be streamed from a temporary
+     *                       file to reduce memory overhead
+     * @return a future completed with the Music, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Music> loadMusicAsync(final String name, final boolean streamFromFile) {
+	return this.loadAsync(new Callable<Music>() {
+	    @Override
+	    public Music call() throws Exception {
+		return TinySound.this.loadMusic(name, streamFromFile);
+	    }
+	});
+    }
+
+    /**
+     * Load a Music by a File in the background. This will store audio data in
+     * memory.
+     * 
+     * @param file the Music file to load
+     * @return a future completed with the Music, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Music> loadMusicAsync(File file) {
+	return this.loadMusicAsync(file, false);
+    }
+
+    /**
+     * Load a Music by a File in the background.
+     * 
+     * @param file           the Music file to load
+     * @param streamFromFile true if this Music should be streamed from a temporary
+     *                       file to reduce memory overhead
+     * @return a future completed with the Music, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Music> loadMusicAsync(final File file, final boolean streamFromFile) {
+	return this.loadAsync(new Callable<Music>() {
+	    @Override
+	    public Music call() throws Exception {
+		return TinySound.this.loadMusic(file, streamFromFile);
+	    }
+	});
+    }
+
+    /**
+     * Load a Music by a URL in the background. This will store audio data in
+     * memory.
+     * 
+     * @param url the URL of the Music
+     * @return a future completed with the Music, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Music> loadMusicAsync(URL url) {
+	return this.loadMusicAsync(url, false);
+    }
+
+    /**
+     * Load a Music by a URL in the background.
+     * 
+     * @param url            the URL of the Music
+     * @param streamFromFile true if this Music should be streamed from a temporary
+     *                       file to reduce memory overhead
+     * @return a future completed with the Music, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Music> loadMusicAsync(final URL url, final boolean streamFromFile) {
+	return this.loadAsync(new Callable<Music>() {
+	    @Override
+	    public Music call() throws Exception {
+		return TinySound.this.loadMusic(url, streamFromFile);
+	    }
+	});
+    }
+
+    /**
+     * Load a Sound by a resource name in the background. The resource must be
+     * on the classpath for this to work. This will store audio data in memory.
+     * 
+     * @param name name of the Sound resource
+     * @return a future completed with the Sound, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Sound> loadSoundAsync(String name) {
+	return this.loadSoundAsync(name, false);
+    }
+
+    /**
+     * Load a Sound by a resource name in the background. The resource must be
+     * on the classpath for this to work.
+     * 
+     * @param name           name of the Sound resource
+     * @param streamFromFile true if this Sound should be streamed from a temporary
+     *                       file to reduce memory overhead
+     * @return a future completed with the Sound, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Sound> loadSoundAsync(final String name, final boolean streamFromFile) {
+	return this.loadAsync(new Callable<Sound>() {
+	    @Override
+	    public Sound call() throws Exception {
+		return TinySound.this.loadSound(name, streamFromFile);
+	    }
+	});
+    }
+
+    /**
+     * Load a Sound by a File in the background. This will store audio data in
+     * memory.
+     * 
+     * @param file the Sound file to load
+     * @return a future completed with the Sound, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Sound> loadSoundAsync(File file) {
+	return this.loadSoundAsync(file, false);
+    }
+
+    /**
+     * Load a Sound by a File in the background.
+     * 
+     * @param file           the Sound file to load
+     * @param streamFromFile true if this Sound should be streamed from a temporary
+     *                       file to reduce memory overhead
+     * @return a future completed with the Sound, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Sound> loadSoundAsync(final File file, final boolean streamFromFile) {
+	return this.loadAsync(new Callable<Sound>() {
+	    @Override
+	    public Sound call() throws Exception {
+		return TinySound.this.loadSound(file, streamFromFile);
+	    }
+	});
+    }
+
+    /**
+     * Load a Sound by a URL in the background. This will store audio data in
+     * memory.
+     * 
+     * @param url the URL of the Sound
+     * @return a future completed with the Sound, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Sound> loadSoundAsync(URL url) {
+	return this.loadSoundAsync(url, false);
+    }
+
+    /**
+     * Load a Sound by a URL in the background.
+     * 
+     * @param url            the URL of the Sound
+     * @param streamFromFile true if this Sound should be streamed from a temporary
+     *                       file to reduce memory overhead
+     * @return a future completed with the Sound, or with the failure to load it
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<Sound> loadSoundAsync(final URL url, final boolean streamFromFile) {
+	return this.loadAsync(new Callable<Sound>() {
+	    @Override
+	    public Sound call() throws Exception {
+		return TinySound.this.loadSound(url, streamFromFile);
+	    }
+	});
+    }
+
+    /**
+     * Load a batch of Music by resource names, decoding them in parallel. The
+     * resources must be on the classpath for this to work. This will store
+     * audio data in memory. If any of them fails to load, the rest are
+     * unloaded and the future completes with the first failure.
+     * 
+     * @param names names of the Music resources
+     * @return a future completed with the Music in the order given
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<List<Music>> loadAllMusic(String... names) {
+	List<CompletableFuture<Music>> futures = new ArrayList<CompletableFuture<Music>>(names.length);
+	for (String name : names) {
+	    futures.add(this.loadMusicAsync(name));
+	}
+	return TinySound.allOf(futures);
+    }
+
+    /**
+     * Load a batch of Music by URLs, decoding them in parallel. This will store
+     * audio data in memory. If any of them fails to load, the rest are
+     * unloaded and the future completes with the first failure.
+     * 
+     * @param urls the URLs of the Music
+     * @return a future completed with the Music in the order given
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<List<Music>> loadAllMusic(URL... urls) {
+	List<CompletableFuture<Music>> futures = new ArrayList<CompletableFuture<Music>>(urls.length);
+	for (URL url : urls) {
+	    futures.add(this.loadMusicAsync(url));
+	}
+	return TinySound.allOf(futures);
+    }
+
+    /**
+     * Load a batch of Sounds by resource names, decoding them in parallel. The
+     * resources must be on the classpath for this to work. This will store
+     * audio data in memory. If any of them fails to load, the rest are
+     * unloaded and the future completes with the first failure.
+     * 
+     * @param names names of the Sound resources
+     * @return a future completed with the Sounds in the order given
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<List<Sound>> loadAllSounds(String... names) {
+	List<CompletableFuture<Sound>> futures = new ArrayList<CompletableFuture<Sound>>(names.length);
+	for (String name : names) {
+	    futures.add(this.loadSoundAsync(name));
+	}
+	return TinySound.allOf(futures);
+    }
+
+    /**
+     * Load a batch of Sounds by URLs, decoding them in parallel. This will
+     * store audio data in memory. If any of them fails to load, the rest are
+     * unloaded and the future completes with the first failure.
+     * 
+     * @param urls the URLs of the Sounds
+     * @return a future completed with the Sounds in the order given
+     * @see #setLoadExecutor(Executor)
+     */
+    public CompletableFuture<List<Sound>> loadAllSounds(URL... urls) {
+	List<CompletableFuture<Sound>> futures = new ArrayList<CompletableFuture<Sound>>(urls.length);
+	for (URL url : urls) {
+	    futures.add(this.loadSoundAsync(url));
+	}
+	return TinySound.allOf(futures);
+    }
+
+    /**
+     * Run a load on the load Executor.
+     * 
+     * @param loader the load to run
+     * @return a future completed with the result of the load
+     */
+    private <T> CompletableFuture<T> loadAsync(final Callable<T> loader) {
+	final CompletableFuture<T> future = new CompletableFuture<T>();
+	Executor executor = this.loadExecutor;
+	if (executor == null) {
+	    executor = this.loaderPool;
+	}
+	try {
+	    executor.execute(new Runnable() {
+		@Override
+		public void run() {
+		    try {
+			future.complete(loader.call());
+		    } catch (Throwable e) {
+			future.completeExceptionally(e);
+		    }
+		}
+	    });
+	} catch (RejectedExecutionException e) {
+	    // shut down, or the Executor is full
+	    future.completeExceptionally(e);
+	}
+	return future;
+    }
+
+    /**
+     * Combine the futures of a batch of loads into one.
+     * 
+     * @param futures the futures of the loads
+     * @return a future completed with the results in order once all loads have
+     *         succeeded, or with the first failure once all loads have finished
+     */
+    private static <T> CompletableFuture<List<T>> allOf(final List<CompletableFuture<T>> futures) {
+	final CompletableFuture<List<T>> result = new CompletableFuture<List<T>>();
+	CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).whenComplete(new BiConsumer<Void, Throwable>() {
+	    @Override
+	    public void accept(Void ignored, Throwable failure) {
+		List<T> loaded = new ArrayList<T>(futures.size());
+		for (CompletableFuture<T> future : futures) {
+		    if (!future.isCompletedExceptionally()) {
+			loaded.add(future.join());
+		    }
+		}
+		if (failure == null) {
+		    result.complete(loaded);
+		    return;
+		}
+		// don't leave the ones that did load registered with nobody to unload them
+		for (T asset : loaded) {
+		    if (asset instanceof Sound) {
+			((Sound) asset).unload();
+		    } else if (asset instanceof Music) {
+			((Music) asset).unload();
+		    }
+		}
+		result.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+	    }
+	});
+	return result;
+    }
+
+    /**
+     * Reads all of the bytes from a URL, converted to the system format. If
+     * there is a cache directory, the bytes are read from there when the
+     * source hasn't changed since it was last converted, and stored there
+     * otherwise.
+     * 
+     * @param url the URL to read
+     * @return array containing left and right channel data
+     */
+    private byte[][] readAllBytes(URL url) throws IOException, UnsupportedAudioFileException {
+	PcmCache cache = this.pcmCache;
+	if (cache == null) {
+	    return TinySound.readAllBytes(TinySound.getValidAudioStream(url));
+	}
+	// hash the source to check the cached copy is still current
+	byte[] source = PcmCache.readSource(url);
+	byte[] hash = PcmCache.hash(source);
+	byte[][] data = cache.load(url, hash);
+	if (data == null) {
+	    AudioInputStream audioStream = AudioSystem.getAudioInputStream(new ByteArrayInputStream(source));
+	    data = TinySound.readAllBytes(TinySound.convertAudioStream(audioStream));
+	    cache.store(url, hash, data[0], data[1]);
+	}
+	return data;
     }
 
     /**
@@ -890,16 +1842,52 @@ public class TinySound {
      * @throws IOException
      */
     private static byte[] getBytes(AudioInputStream stream) throws IOException {
+	// when the length is known, read straight into an array of that size
+	long expected = stream.getFrameLength() * stream.getFormat().getFrameSize();
+	if (stream.getFrameLength() != AudioSystem.NOT_SPECIFIED && expected >= 0 && expected <= Integer.MAX_VALUE - 8) {
+	    byte[] data = new byte[(int) expected];
+	    int numRead = 0;
+	    int tmpRead = 0;
+	    while (numRead < data.length && (tmpRead = stream.read(data, numRead, data.length - numRead)) > -1) {
+		numRead += tmpRead;
+	    }
+	    if (numRead < data.length) {
+		// the stream was shorter than it said
+		return Arrays.copyOf(data, numRead);
+	    }
+	    // make sure the stream doesn't go on past what it said
+	    byte[] buf = new byte[4096];
+	    if ((tmpRead = stream.read(buf)) <= 0) {
+		return data;
+	    }
+	    ByteList list = new ByteList(data.length * 2);
+	    list.add(data, 0, data.length);
+	    list.add(buf, 0, tmpRead);
+	    return TinySound.getBytes(stream, list);
+	}
+	// buffer 1-sec at a time
+	int bufSize = (int) TinySound.FORMAT.getSampleRate() * TinySound.FORMAT.getChannels()
+		* TinySound.FORMAT.getFrameSize();
+	return TinySound.getBytes(stream, new ByteList(bufSize));
+    }
+
+    /**
+     * Read the rest of the bytes from an AudioInputStream onto those already
+     * read.
+     * 
+     * @param stream the stream from which to read bytes
+     * @param list   the bytes already read
+     * @return all bytes read from the AudioInputStream
+     * @throws IOException
+     */
+    private static byte[] getBytes(AudioInputStream stream, ByteList list) throws IOException {
 	// buffer 1-sec at a time
 	int bufSize = (int) TinySound.FORMAT.getSampleRate() * TinySound.FORMAT.getChannels()
 		* TinySound.FORMAT.getFrameSize();
 	byte[] buf = new byte[bufSize];
-	ByteList list = new ByteList(bufSize);
 	int numRead = 0;
 	while ((numRead = stream.read(buf)) > -1) {
-	    for (int i = 0; i < numRead; i++) {
-		list.add(buf[i]);
-	    }
+	    list.add(buf, 0, numRead);
 	}
 	return list.asArray();
     }
@@ -964,9 +1952,10 @@ public class TinySound {
      * Iterates through available JavaSound Mixers looking for one that can provide
      * a line to the speakers.
      * 
+     * @param bufferSize the buffer size in bytes, -1 for the line's default
      * @return an opened SourceDataLine to the speakers
      */
-    private static SourceDataLine tryGetLine() {
+    private static SourceDataLine tryGetLine(int bufferSize) {
 	// first build our line info and get all available mixers
 	DataLine.Info lineInfo = new DataLine.Info(SourceDataLine.class, TinySound.FORMAT);
 	javax.sound.sampled.Mixer.Info[] mixerInfos = AudioSystem.getMixerInfo();
@@ -991,7 +1980,7 @@ public class TinySound {
 		line = (SourceDataLine) mixer.getLine(lineInfo);
 		// don't try to open if already open
 		if (!line.isOpen()) {
-		    line.open(TinySound.FORMAT);
+		    TinySound.openLine(line, bufferSize);
 		}
 	    } catch (LineUnavailableException e) {
 		// we either failed to get or open
@@ -1016,4 +2005,142 @@ public class TinySound {
 	this.listenersManager.unregisterListener(listener);
     }
 
+    /**
+     * Determine if events are delivered to listeners asynchronously.
+     * 
+     * @return true if events are delivered asynchronously
+     */
+    public boolean isAsyncEvents() {
+	return this.listenersManager.isAsync();
+    }
+
+    /**
+     * Set whether events are delivered to listeners asynchronously. By default
+     * listeners are called on the thread that fires the event, which for most
+     * events is the audio thread, so a slow listener can cause audio dropouts.
+     * Asynchronously, events are queued without blocking and delivered in
+     * order on the event Executor, or on a dedicated dispatcher thread if there
+     * is none. If listeners fall too far behind, new events are dropped.
+     * 
+     * @param async whether events should be delivered asynchronously
+     * @see #setEventExecutor(Executor)
+     */
+    public void setAsyncEvents(boolean async) {
+	this.listenersManager.setAsync(async);
+    }
+
+    /**
+     * Get the Executor asynchronous events are delivered on.
+     * 
+     * @return the event Executor, null if the dispatcher thread is used
+     */
+    public Executor getEventExecutor() {
+	return this.listenersManager.getExecutor();
+    }
+
+    /**
+     * Set the Executor asynchronous events are delivered on, such as a UI
+     * event queue. Events are delivered by one task at a time, so listeners are
+     * never called concurrently. Set null to use TinySound's own dispatcher
+     * thread, which is the default.
+     * 
+     * @param executor the event Executor, null for the dispatcher thread
+     * @see #setAsyncEvents(boolean)
+     */
+    public void setEventExecutor(Executor executor) {
+	this.listenersManager.setExecutor(executor);
+    }
+
+    /**
+     * Get the Executor the asynchronous load methods run on.
+     * 
+     * @return the load Executor, null if the loader pool is used
+     */
+    public Executor getLoadExecutor() {
+	return this.loadExecutor;
+    }
+
+    /**
+     * Set the Executor the asynchronous load methods run on. Loads that are
+     * already running are not moved. Set null to use TinySound's own loader
+     * pool, which is the default and runs one load per processor at a time.
+     * 
+     * @param executor the load Executor, null for the loader pool
+     * @see #loadSoundAsync(URL)
+     * @see #loadAllSounds(URL...)
+     */
+    public void setLoadExecutor(Executor executor) {
+	this.loadExecutor = executor;
+    }
+
+    /**
+     * Get the byte budget of the asset cache.
+     * 
+     * @return the number of bytes unused audio data may be kept within
+     * @see #setCacheBudget(long)
+     */
+    public long getCacheBudget() {
+	return this.assetCache.getBudget();
+    }
+
+    /**
+     * Set the byte budget of the asset cache. Sounds and Music loaded into
+     * memory from the same URL or resource name share their audio data, so
+     * loading one again is free while any of them is still loaded. Once all
+     * of them are unloaded, the data is kept for the next load as long as the
+     * cache fits in the budget, evicting the least recently played first.
+     * Data in use is never evicted and counts against the budget too. The
+     * default budget is 0, which only shares data that is in use.
+     * 
+     * @param bytes the number of bytes unused audio data may be kept within
+     */
+    public void setCacheBudget(long bytes) {
+	this.assetCache.setBudget(bytes);
+    }
+
+    /**
+     * Get the number of bytes of audio data held by the asset cache, in use or
+     * not.
+     * 
+     * @return the size of the asset cache in bytes
+     */
+    public long getCacheSize() {
+	return this.assetCache.getSize();
+    }
+
+    /**
+     * Evict all audio data in the asset cache that is not in use.
+     */
+    public void clearCache() {
+	this.assetCache.clear();
+    }
+
+    /**
+     * Get the directory converted audio data is kept in between runs.
+     * 
+     * @return the cache directory, null if there is none
+     * @see #setCacheDirectory(File)
+     */
+    public File getCacheDirectory() {
+	PcmCache cache = this.pcmCache;
+	return (cache == null) ? null : cache.getDirectory();
+    }
+
+    /**
+     * Set a directory to keep converted audio data in between runs. Loading
+     * from a URL, File or resource name then stores the converted audio in
+     * the directory, and later loads map it straight back in rather than
+     * decoding and converting the source again, as long as the source is
+     * unchanged. Sources are still read and hashed to tell if they changed.
+     * Set null to stop using a cache directory, which is the default. The
+     * directory is not cleaned up; entries that are out of date are replaced
+     * when their source is loaded again.
+     * 
+     * @param directory the cache directory, null for none
+     * @throws IOException if the directory doesn't exist and can't be created
+     */
+    public void setCacheDirectory(File directory) throws IOException {
+	this.pcmCache = (directory == null) ? null : new PcmCache(directory);
+    }
+
 }
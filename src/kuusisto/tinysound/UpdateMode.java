@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound;
+
+/**
+ * The UpdateMode enum lists the ways TinySound can decide when to mix more
+ * audio for the output line, or that it has no output line at all.
+ *
+ * @author Finn Kuusisto
+ */
+public enum UpdateMode {
+
+	/**
+	 * Wake up every millisecond and mix however much audio has played since
+	 * the last update, skipping audio if the updater fell too far behind.
+	 * Latency is low, but the update thread wakes up often.
+	 */
+	TIMED,
+
+	/**
+	 * Mix as much audio as the output line has room for and then block writing
+	 * it to the line until the line needs more.  The update thread only wakes
+	 * up when the line needs data and audio is never skipped, but latency is
+	 * the size of the line's buffer.
+	 */
+	PULL,
+
+	/**
+	 * Mix audio ahead of time on one thread, keeping up to the latency of it
+	 * buffered, while another thread writes it to the output line.  A hiccup
+	 * in mixing is absorbed by the audio already mixed, and a slow write to
+	 * the line doesn't hold up mixing, so the mixing thread can run at a lower
+	 * priority.  Latency is the render-ahead buffer plus the line's buffer.
+	 */
+	RENDER_AHEAD,
+
+	/**
+	 * Don't open an output line or start an update thread at all.  Audio is
+	 * only mixed when one of the TinySound render methods is called, as fast
+	 * as the CPU allows, and the engine clock only advances by the frames
+	 * rendered.  Useful for automated tests and rendering to files on machines
+	 * without audio hardware.
+	 */
+	OFFLINE;
+
+}
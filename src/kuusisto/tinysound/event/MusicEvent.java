@@ -32,11 +32,18 @@ public final class MusicEvent
 {
     private final Music music;
     private final MusicEvent.Action action;
+    private final int loops;
     
     public MusicEvent(Music music, MusicEvent.Action action)
+    {
+        this(music, action, 1);
+    }
+    
+    public MusicEvent(Music music, MusicEvent.Action action, int loops)
     {
         this.music = music;
         this.action = action;
+        this.loops = loops;
     }
     
     public Music getMusic()
@@ -49,6 +56,18 @@ public final class MusicEvent
         return this.action;
     }
     
+    /**
+     * Get the number of times the music went around its loop for a LOOP
+     * event. This is more than 1 only when muted or skipped music passes
+     * several loop ends at once, which is reported as a single event.
+     * 
+     * @return the number of times around the loop, 1 for other actions
+     */
+    public int getLoops()
+    {
+        return this.loops;
+    }
+    
     public static enum Action {
 	PLAY, STOP, LOOP;
     }
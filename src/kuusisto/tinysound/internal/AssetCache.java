@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The AssetCache class shares decoded audio data between everything loaded
+ * from the same source, so loading an asset again costs no decoding and no
+ * memory.  Entries are counted by the MemSounds and MemMusic using them and
+ * stay until the last of those is unloaded.  Unused entries are then kept for
+ * reuse as long as the cache fits in its byte budget, with the least recently
+ * played going first.  AssetCache is an internal class of the TinySound
+ * system and should be of no real concern to the average user of TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public class AssetCache {
+
+	private final Map<String, Entry> entries;
+	private long budget;
+	private long size; //bytes held by every entry, used or not
+
+	/**
+	 * Construct a new AssetCache.
+	 * @param budget the number of bytes unused entries may be kept within
+	 */
+	public AssetCache(long budget) {
+		this.entries = new HashMap<String, Entry>();
+		this.budget = budget;
+		this.size = 0;
+	}
+
+	/**
+	 * Get the entry for a source and count a new user of it.
+	 * @param key the source of the audio data
+	 * @return the entry for the source, null if it isn't cached
+	 */
+	public synchronized Entry acquire(String key) {
+		Entry entry = this.entries.get(key);
+		if (entry != null) {
+			entry.references++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Add the audio data for a source and count its first user.  If the source
+	 * was cached in the meantime, that entry is used instead and the given
+	 * data can be dropped.
+	 * @param key the source of the audio data
+	 * @param left left channel of audio data
+	 * @param right right channel of audio data, may be the same as left
+	 * @return the entry for the source
+	 */
+	public synchronized Entry put(String key, byte[] left, byte[] right) {
+		Entry entry = this.entries.get(key);
+		if (entry != null) {
+			entry.references++;
+			return entry;
+		}
+		entry = new Entry(this, key, left, right);
+		//in use before evicting so it can't be evicted itself
+		entry.references++;
+		this.entries.put(key, entry);
+		this.size += entry.size;
+		this.evict();
+		return entry;
+	}
+
+	/**
+	 * Get the number of bytes unused entries may be kept within.
+	 * @return the byte budget
+	 */
+	public synchronized long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * Set the number of bytes unused entries may be kept within, evicting
+	 * unused entries until the cache fits or none are left.
+	 * @param budget the byte budget
+	 */
+	public synchronized void setBudget(long budget) {
+		this.budget = budget;
+		this.evict();
+	}
+
+	/**
+	 * Get the number of bytes held by every entry, used or not.
+	 * @return the size of the cache in bytes
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Evict every unused entry.
+	 */
+	public synchronized void clear() {
+		Iterator<Entry> iterator = this.entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.references == 0) {
+				iterator.remove();
+				this.size -= entry.size;
+			}
+		}
+	}
+
+	/**
+	 * Count a user of an entry as gone, evicting unused entries if the cache
+	 * no longer fits.
+	 * @param entry the entry no longer used
+	 */
+	private synchronized void release(Entry entry) {
+		entry.references--;
+		this.evict();
+	}
+
+	/**
+	 * Evict the least recently played unused entries until the cache fits in
+	 * the budget or none are left.
+	 */
+	private void evict() {
+		while (this.size > this.budget) {
+			Entry oldest = null;
+			for (Entry entry : this.entries.values()) {
+				if (entry.references == 0 && (oldest == null ||
+						entry.lastPlayed - oldest.lastPlayed < 0)) {
+					oldest = entry;
+				}
+			}
+			if (oldest == null) {
+				//everything left is in use
+				return;
+			}
+			this.entries.remove(oldest.key);
+			this.size -= oldest.size;
+		}
+	}
+
+	///////////
+	//Entries//
+	///////////
+
+	/**
+	 * The Entry class holds the shared audio data of one source.  Whatever
+	 * acquired it must release it exactly once, when done with the data.
+	 *
+	 * @author Finn Kuusisto
+	 */
+	public static class Entry {
+
+		private final AssetCache cache;
+		private final String key;
+		private final byte[] left;
+		private final byte[] right;
+		private final long size;
+		private int references; //guarded by the cache
+		private volatile long lastPlayed;
+
+		/**
+		 * Construct a new Entry, unused.
+		 * @param cache the AssetCache holding this Entry
+		 * @param key the source of the audio data
+		 * @param left left channel of audio data
+		 * @param right right channel of audio data, may be the same as left
+		 */
+		private Entry(AssetCache cache, String key, byte[] left,
+				byte[] right) {
+			this.cache = cache;
+			this.key = key;
+			this.left = left;
+			this.right = right;
+			//mono data is shared by both channels
+			this.size = (left == right) ? left.length :
+				(long)left.length + right.length;
+			this.references = 0;
+			this.lastPlayed = System.nanoTime();
+		}
+
+		/**
+		 * Get the left channel of audio data.
+		 * @return the left channel of audio data
+		 */
+		public byte[] getLeft() {
+			return this.left;
+		}
+
+		/**
+		 * Get the right channel of audio data.
+		 * @return the right channel of audio data
+		 */
+		public byte[] getRight() {
+			return this.right;
+		}
+
+		/**
+		 * Note that the audio data has just been played, so it is kept longer
+		 * than entries played less recently.  This never locks, so it is safe
+		 * to call on every play.
+		 */
+		public void markPlayed() {
+			this.lastPlayed = System.nanoTime();
+		}
+
+		/**
+		 * Stop using this Entry.
+		 */
+		public void release() {
+			this.cache.release(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import kuusisto.tinysound.TinySound;
+
+/**
+ * The AudioClock class tracks how far the output has got through the audio
+ * written to it, so that other threads can tell which engine frame is being
+ * heard right now.  The thread writing to the output records where the output
+ * was after every write, and readers extrapolate from there by the time since,
+ * so reads are cheap enough to do every video frame and never lock.
+ * AudioClock is an internal class of the TinySound system and should be of no
+ * real concern to the average user of TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public class AudioClock {
+
+	private final double framesPerNano;
+	//odd while the writer is changing the snapshot, readers retry then
+	private volatile long sequence;
+	//snapshot of the output after the last write
+	private volatile long framesWritten;
+	private volatile long framesPlayed;
+	private volatile long engineFrame; //engine frame at the end of the writes
+	private volatile long timestamp;
+
+	/**
+	 * Construct a new AudioClock.
+	 */
+	public AudioClock() {
+		this.framesPerNano = TinySound.FORMAT.getFrameRate() / 1000000000.0;
+		this.sequence = 0;
+		this.framesWritten = 0;
+		this.framesPlayed = 0;
+		this.engineFrame = 0;
+		this.timestamp = System.nanoTime();
+	}
+
+	/**
+	 * Record a write to the output.  Only the thread writing to the output may
+	 * call this.
+	 * @param numFrames the number of frames written
+	 * @param engineFrame the engine frame just after the last frame written
+	 * @param framesPlayed the number of frames the output has played so far
+	 */
+	public void recordWrite(int numFrames, long engineFrame,
+			long framesPlayed) {
+		long time = System.nanoTime();
+		long sequence = this.sequence;
+		this.sequence = sequence + 1;
+		this.framesWritten += numFrames;
+		this.framesPlayed = framesPlayed;
+		this.engineFrame = engineFrame;
+		this.timestamp = time;
+		this.sequence = sequence + 2;
+	}
+
+	/**
+	 * Get the number of frames written to the output so far.
+	 * @return the number of frames written to the output
+	 */
+	public long getFramesWritten() {
+		return this.framesWritten;
+	}
+
+	/**
+	 * Get the number of frames the output has played so far, estimated from
+	 * where it was at the last write and the time since.
+	 * @return the number of frames the output has played
+	 */
+	public long getFramesPlayed() {
+		long written;
+		long played;
+		long time;
+		long sequence;
+		do {
+			sequence = this.sequence;
+			written = this.framesWritten;
+			played = this.framesPlayed;
+			time = this.timestamp;
+		} while ((sequence & 1) != 0 || sequence != this.sequence);
+		return this.extrapolate(written, played, time);
+	}
+
+	/**
+	 * Get the engine frame being played by the output right now, estimated
+	 * from where it was at the last write and the time since.
+	 * @return the engine frame being played
+	 */
+	public long getPlaybackFrame() {
+		long written;
+		long played;
+		long engineFrame;
+		long time;
+		long sequence;
+		do {
+			sequence = this.sequence;
+			written = this.framesWritten;
+			played = this.framesPlayed;
+			engineFrame = this.engineFrame;
+			time = this.timestamp;
+		} while ((sequence & 1) != 0 || sequence != this.sequence);
+		//whatever is still queued in the output is behind the engine
+		return engineFrame - (written - this.extrapolate(written, played,
+				time));
+	}
+
+	/**
+	 * Move the frames played along by the time since they were recorded, but
+	 * never past what has been written.
+	 * @param written the number of frames written
+	 * @param played the number of frames played when recorded
+	 * @param time when the frames played were recorded
+	 * @return the estimated number of frames played now
+	 */
+	private long extrapolate(long written, long played, long time) {
+		long elapsed = (long)((System.nanoTime() - time) *
+				this.framesPerNano);
+		return Math.min(written, played + Math.max(0, elapsed));
+	}
+
+}
@@ -79,6 +79,28 @@ public class ByteList {
 		this.numBytes++;
 	}
 	
+	/**
+	 * Add a run of bytes to the end of this ByteList.
+	 * @param src the array holding the bytes to add
+	 * @param offset the start index of the bytes to add
+	 * @param length the number of bytes to add
+	 */
+	public void add(byte[] src, int offset, int length) {
+		if (length > Integer.MAX_VALUE - this.numBytes) {
+			throw new RuntimeException("Array reached maximum size");
+		}
+		int needed = this.numBytes + length;
+		if (needed > this.data.length) {
+			//grow the backing array, at least doubling it
+			long tmp = Math.max((long)this.data.length * 2, needed);
+			int newSize = tmp > Integer.MAX_VALUE ?
+					Integer.MAX_VALUE : (int)tmp;
+			this.data = Arrays.copyOf(this.data, newSize);
+		}
+		System.arraycopy(src, offset, this.data, this.numBytes, length);
+		this.numBytes = needed;
+	}
+	
 	/**
 	 * Get a byte at a specified index in this ByteList.
 	 * @param i the index of the byte to get
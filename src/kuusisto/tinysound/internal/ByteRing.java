@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ByteRing class is a bounded, lock-free, single-producer,
+ * single-consumer ring buffer of bytes.  One thread writes and one thread
+ * reads, each only ever moving its own position, so neither ever waits on the
+ * other.  Writes and reads are partial when the ring is full or empty rather
+ * than blocking.  ByteRing is an internal class of the TinySound system and
+ * should be of no real concern to the average user of TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public class ByteRing {
+
+	private final byte[] data;
+	private final int mask;
+	private final AtomicLong writePosition; //only the producer moves this
+	private final AtomicLong readPosition; //only the consumer moves this
+
+	/**
+	 * Construct a new ByteRing.
+	 * @param capacity the number of bytes it can hold, rounded up to a power
+	 * of two
+	 */
+	public ByteRing(int capacity) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.data = new byte[size];
+		this.mask = size - 1;
+		this.writePosition = new AtomicLong();
+		this.readPosition = new AtomicLong();
+	}
+
+	/**
+	 * Get the number of bytes this ByteRing can hold.
+	 * @return the number of bytes this ByteRing can hold
+	 */
+	public int capacity() {
+		return this.data.length;
+	}
+
+	/**
+	 * Get the number of bytes that can be read right now.
+	 * @return the number of bytes that can be read
+	 */
+	public int available() {
+		return (int)(this.writePosition.get() - this.readPosition.get());
+	}
+
+	/**
+	 * Get the number of bytes that can be written right now.
+	 * @return the number of bytes that can be written
+	 */
+	public int free() {
+		return this.data.length - this.available();
+	}
+
+	/**
+	 * Get the total number of bytes read from this ByteRing so far.
+	 * @return the total number of bytes read
+	 */
+	public long getReadPosition() {
+		return this.readPosition.get();
+	}
+
+	/**
+	 * Write as many bytes as there is room for.  Only the producer thread may
+	 * call this.
+	 * @param src the buffer holding the bytes to write
+	 * @param offset the start index of the bytes to write
+	 * @param length the maximum number of bytes to write
+	 * @return the number of bytes written
+	 */
+	public int write(byte[] src, int offset, int length) {
+		long write = this.writePosition.get();
+		int free = this.data.length - (int)(write - this.readPosition.get());
+		int numBytes = Math.min(free, length);
+		if (numBytes <= 0) {
+			return 0;
+		}
+		int index = (int)write & this.mask;
+		//copy up to the end of the array, then wrap around to the start
+		int first = Math.min(numBytes, this.data.length - index);
+		System.arraycopy(src, offset, this.data, index, first);
+		System.arraycopy(src, offset + first, this.data, 0, numBytes - first);
+		//publish the bytes to the consumer
+		this.writePosition.lazySet(write + numBytes);
+		return numBytes;
+	}
+
+	/**
+	 * Read as many bytes as are available.  Only the consumer thread may call
+	 * this.
+	 * @param dst the buffer to read the bytes into
+	 * @param offset the start index to read bytes into
+	 * @param length the maximum number of bytes to read
+	 * @return the number of bytes read
+	 */
+	public int read(byte[] dst, int offset, int length) {
+		long read = this.readPosition.get();
+		int available = (int)(this.writePosition.get() - read);
+		int numBytes = Math.min(available, length);
+		if (numBytes <= 0) {
+			return 0;
+		}
+		int index = (int)read & this.mask;
+		//copy up to the end of the array, then wrap around to the start
+		int first = Math.min(numBytes, this.data.length - index);
+		System.arraycopy(this.data, index, dst, offset, first);
+		System.arraycopy(this.data, 0, dst, offset + first, numBytes - first);
+		//hand the space back to the producer
+		this.readPosition.lazySet(read + numBytes);
+		return numBytes;
+	}
+
+	/**
+	 * Throw away every byte that can be read right now.  Only the consumer
+	 * thread may call this.
+	 * @return the number of bytes thrown away
+	 */
+	public int clear() {
+		long read = this.readPosition.get();
+		long write = this.writePosition.get();
+		this.readPosition.lazySet(write);
+		return (int)(write - read);
+	}
+
+}
@@ -27,7 +27,15 @@
 package kuusisto.tinysound.internal;
 
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import kuusisto.tinysound.event.MusicEvent;
 import kuusisto.tinysound.event.SoundEvent;
@@ -36,11 +44,57 @@ import kuusisto.tinysound.event.SoundEventListener;
 public class EventHandler
 {
     
+    // maximum number of events that can wait for dispatch in async mode
+    private static final int EVENT_QUEUE_SIZE = 4096;
+    
     private final Set<SoundEventListener> listeners;
+    // snapshot of the listeners, walked by index so firing allocates nothing
+    private volatile SoundEventListener[] listenerArray;
+    
+    // async dispatch: events are queued by the audio thread and delivered by
+    // one drain at a time, either on the executor or on the dispatcher thread
+    private final RingQueue<Record> queue;
+    private final AtomicBoolean scheduled;
+    private final AtomicLong droppedEvents;
+    private final Runnable drain;
+    private volatile boolean async;
+    private volatile Executor executor;
+    private volatile ThreadPoolExecutor dispatcher;
+    // thread running the drain, if any, so settings changed by a listener
+    // don't wait on the drain that called them
+    private volatile Thread drainThread;
+    // guards the async settings, separate from the listener lock since
+    // changing them waits for a drain that notifies listeners
+    private final Object settingsLock;
     
     public EventHandler()
     {
         this.listeners = ConcurrentHashMap.newKeySet();
+        this.listenerArray = new SoundEventListener[0];
+        this.queue = new RingQueue<Record>(EventHandler.EVENT_QUEUE_SIZE,
+                new RingQueue.Factory<Record>()
+                {
+                    @Override
+                    public Record create()
+                    {
+                        return new Record();
+                    }
+                });
+        this.scheduled = new AtomicBoolean(false);
+        this.droppedEvents = new AtomicLong();
+        this.drain = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                EventHandler.this.drain();
+            }
+        };
+        this.async = false;
+        this.executor = null;
+        this.dispatcher = null;
+        this.drainThread = null;
+        this.settingsLock = new Object();
     }
     
     public void registerListener(SoundEventListener listener) throws NullPointerException
@@ -48,6 +102,7 @@ public class EventHandler
         if (listener == null)
             throw new NullPointerException("listener is null");
         this.listeners.add(listener);
+        this.updateListenerArray();
     }
     
     public void unregisterListener(SoundEventListener listener) throws NullPointerException
@@ -55,34 +110,276 @@ public class EventHandler
         if (listener == null)
             throw new NullPointerException("listener is null");
         this.listeners.remove(listener);
+        this.updateListenerArray();
     }
     
     public void unregisterAllListeners()
     {
         this.listeners.clear();
+        this.updateListenerArray();
+    }
+    
+    private synchronized void updateListenerArray()
+    {
+        this.listenerArray = this.listeners.toArray(new SoundEventListener[0]);
+    }
+    
+    public boolean isAsync()
+    {
+        return this.async;
+    }
+    
+    // in async mode events are delivered off the firing thread, on the executor
+    // if there is one and on a dispatcher thread otherwise
+    public void setAsync(boolean async)
+    {
+        ThreadPoolExecutor stopped = null;
+        synchronized (this.settingsLock)
+        {
+            if (async && this.executor == null)
+                this.startDispatcher();
+            this.async = async;
+            if (!async)
+                stopped = this.stopDispatcher();
+        }
+        if (!async)
+        {
+            this.awaitDispatcher(stopped);
+            // deliver whatever was still queued
+            this.flush();
+        }
+    }
+    
+    public Executor getExecutor()
+    {
+        return this.executor;
     }
     
-    public synchronized void fireMusicEvent(MusicEvent event)
+    // null to use the dispatcher thread
+    public void setExecutor(Executor executor)
+    {
+        ThreadPoolExecutor stopped = null;
+        synchronized (this.settingsLock)
+        {
+            this.executor = executor;
+            if (executor != null)
+                stopped = this.stopDispatcher();
+            else if (this.async)
+                this.startDispatcher();
+            // hand anything still queued to the new executor or dispatcher
+            if (this.async && this.queue.peek() != null)
+                this.schedule();
+        }
+        this.awaitDispatcher(stopped);
+    }
+    
+    // approximate number of events waiting for async dispatch
+    public int getQueueDepth()
+    {
+        return this.queue.size();
+    }
+    
+    // number of events thrown away because the async queue was full
+    public long getDroppedEvents()
+    {
+        return this.droppedEvents.get();
+    }
+    
+    public void shutdown()
+    {
+        ThreadPoolExecutor stopped;
+        synchronized (this.settingsLock)
+        {
+            this.async = false;
+            stopped = this.stopDispatcher();
+        }
+        this.awaitDispatcher(stopped);
+        this.flush();
+    }
+    
+    public void fireMusicEvent(MusicEvent event)
     {
         if (event == null)
             throw new NullPointerException("event should not be null");
         
-        if (!this.listeners.isEmpty())
-        {
-            for (SoundEventListener listener : this.listeners)
-                listener.onMusicEvent(event);
-        }
+        if (this.listenerArray.length == 0)
+            return;
+        if (this.async)
+            this.enqueue(event, null);
+        else
+            this.notifyMusicEvent(event);
     }
     
-    public synchronized void fireSoundEvent(SoundEvent event)
+    public void fireSoundEvent(SoundEvent event)
     {
         if (event == null)
             throw new NullPointerException("event should not be null");
         
-        if (!this.listeners.isEmpty())
+        if (this.listenerArray.length == 0)
+            return;
+        if (this.async)
+            this.enqueue(null, event);
+        else
+            this.notifySoundEvent(event);
+    }
+    
+    private synchronized void notifyMusicEvent(MusicEvent event)
+    {
+        SoundEventListener[] listeners = this.listenerArray;
+        for (int i = 0; i < listeners.length; i++)
+            listeners[i].onMusicEvent(event);
+    }
+    
+    private synchronized void notifySoundEvent(SoundEvent event)
+    {
+        SoundEventListener[] listeners = this.listenerArray;
+        for (int i = 0; i < listeners.length; i++)
+            listeners[i].onSoundEvent(event);
+    }
+    
+    private void enqueue(MusicEvent musicEvent, SoundEvent soundEvent)
+    {
+        long ticket = this.queue.claim();
+        if (ticket < 0)
         {
-            for (SoundEventListener listener : this.listeners)
-                listener.onSoundEvent(event);
+            // never block the audio thread on slow listeners
+            this.droppedEvents.incrementAndGet();
+            return;
         }
+        Record record = this.queue.get(ticket);
+        record.musicEvent = musicEvent;
+        record.soundEvent = soundEvent;
+        this.queue.publish(ticket);
+        this.schedule();
+    }
+    
+    private void schedule()
+    {
+        // only one drain is ever pending or running
+        if (this.scheduled.compareAndSet(false, true))
+        {
+            Executor executor = this.executor;
+            if (executor == null)
+                executor = this.dispatcher;
+            if (executor == null)
+            {
+                this.scheduled.set(false);
+                return;
+            }
+            try
+            {
+                executor.execute(this.drain);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // left queued for the next drain
+                this.scheduled.set(false);
+            }
+        }
+    }
+    
+    private void flush()
+    {
+        if (this.scheduled.compareAndSet(false, true))
+            this.drain();
+    }
+    
+    private void drain()
+    {
+        do
+        {
+            this.drainThread = Thread.currentThread();
+            Record record;
+            while ((record = this.queue.peek()) != null)
+            {
+                MusicEvent musicEvent = record.musicEvent;
+                SoundEvent soundEvent = record.soundEvent;
+                record.musicEvent = null;
+                record.soundEvent = null;
+                this.queue.release();
+                try
+                {
+                    if (musicEvent != null)
+                        this.notifyMusicEvent(musicEvent);
+                    else
+                        this.notifySoundEvent(soundEvent);
+                }
+                catch (RuntimeException e)
+                {
+                    // report it like any uncaught listener exception on this
+                    // thread, but keep delivering the rest
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(
+                            thread, e);
+                }
+            }
+            this.drainThread = null;
+            this.scheduled.set(false);
+            // an event queued after the last peek but before the flag was
+            // cleared wouldn't have scheduled a drain
+        }
+        while (this.queue.peek() != null
+                && this.scheduled.compareAndSet(false, true));
+    }
+    
+    private void startDispatcher()
+    {
+        if (this.dispatcher != null)
+            return;
+        // only one drain is ever pending, so a one slot queue never allocates
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1),
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable,
+                                "TinySound event dispatcher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // pick up anything queued while there was nobody to drain it
+        if (this.queue.peek() != null)
+            this.schedule();
+    }
+    
+    // stops the dispatcher taking new drains, returning it so the caller can
+    // wait for a pending drain once the settings lock is released
+    private ThreadPoolExecutor stopDispatcher()
+    {
+        ThreadPoolExecutor dispatcher = this.dispatcher;
+        if (dispatcher == null)
+            return null;
+        this.dispatcher = null;
+        dispatcher.shutdown();
+        return dispatcher;
+    }
+    
+    // let a pending drain on a stopped dispatcher finish, never while holding
+    // the settings lock since a listener may be changing settings itself
+    private void awaitDispatcher(ThreadPoolExecutor dispatcher)
+    {
+        if (dispatcher == null)
+            return;
+        // a listener called us from the drain, which can't wait for itself
+        if (this.drainThread == Thread.currentThread())
+            return;
+        try
+        {
+            dispatcher.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // a slot of the async queue, holding one of the two kinds of event
+    private static class Record
+    {
+        MusicEvent musicEvent;
+        SoundEvent soundEvent;
     }
 }
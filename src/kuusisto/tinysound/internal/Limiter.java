@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+/**
+ * The Limiter class is a look-ahead peak limiter for a stereo float mix bus.
+ * For each frame it works out the gain needed to keep that frame under the
+ * threshold, holds the smallest such gain over the look-ahead window, lets it
+ * recover with an exponential release, and smooths it with a moving average
+ * over the window.  The audio is delayed by the window so the gain has already
+ * come down by the time a peak comes out.  All state is preallocated, so
+ * processing a block allocates nothing.  Limiter is an internal class of the
+ * TinySound system and should be of no real concern to the average user of
+ * TinySound.
+ * 
+ * @author Finn Kuusisto
+ */
+public class Limiter {
+	
+	/**
+	 * Number of frames the Limiter looks ahead, which is also how many frames
+	 * it delays the audio by (2ms at 44.1kHz).
+	 */
+	public static final int LOOKAHEAD_FRAMES = 88;
+	
+	/**
+	 * Number of frames the audio coming out of the Limiter trails the audio
+	 * going in, which is how many frames it holds back at any time.
+	 */
+	public static final int DELAY_FRAMES = Limiter.LOOKAHEAD_FRAMES - 1;
+	
+	private static final double SAMPLE_RATE = 44100.0;
+	
+	//delay line for the audio, DELAY_FRAMES frames long
+	private final float[] delayLeft;
+	private final float[] delayRight;
+	private int delayPosition;
+	//monotonic queue for the smallest gain over the window
+	private final float[] minGains;
+	private final long[] minFrames;
+	private int minHead;
+	private int minCount;
+	//moving average of the held and released gain over the window
+	private final float[] averageGains;
+	private double averageSum;
+	private int averagePosition;
+	private float releasedGain;
+	private long frame;
+	//settings
+	private float threshold; //in sample values
+	private double releaseMillis;
+	private float releaseCoefficient;
+	
+	/**
+	 * Construct a new Limiter with a threshold at full scale and a 100ms
+	 * release.
+	 */
+	public Limiter() {
+		this.delayLeft = new float[Limiter.DELAY_FRAMES];
+		this.delayRight = new float[Limiter.DELAY_FRAMES];
+		this.minGains = new float[Limiter.LOOKAHEAD_FRAMES];
+		this.minFrames = new long[Limiter.LOOKAHEAD_FRAMES];
+		this.averageGains = new float[Limiter.LOOKAHEAD_FRAMES];
+		this.setThreshold(1.0);
+		this.setRelease(100.0);
+		this.reset();
+	}
+	
+	/**
+	 * Set the level this Limiter keeps the audio under.
+	 * @param threshold the threshold as a fraction of full scale (0.0,1.0]
+	 */
+	public void setThreshold(double threshold) {
+		this.threshold = (float)(threshold * Short.MAX_VALUE);
+	}
+	
+	/**
+	 * Set how long this Limiter takes to recover after a peak.
+	 * @param millis the release time constant in milliseconds
+	 */
+	public void setRelease(double millis) {
+		if (millis != this.releaseMillis) {
+			this.releaseMillis = millis;
+			double releaseFrames = (millis / 1000.0) * Limiter.SAMPLE_RATE;
+			this.releaseCoefficient = (releaseFrames <= 1.0) ? 1.0f :
+				(float)(1.0 - Math.exp(-1.0 / releaseFrames));
+		}
+	}
+	
+	/**
+	 * Clear the audio delayed in this Limiter and reset its gain.
+	 */
+	public void reset() {
+		for (int i = 0; i < this.delayLeft.length; i++) {
+			this.delayLeft[i] = 0.0f;
+			this.delayRight[i] = 0.0f;
+		}
+		for (int i = 0; i < this.averageGains.length; i++) {
+			this.averageGains[i] = 1.0f;
+		}
+		this.delayPosition = 0;
+		this.minHead = 0;
+		this.minCount = 0;
+		this.averageSum = Limiter.LOOKAHEAD_FRAMES;
+		this.averagePosition = 0;
+		this.releasedGain = 1.0f;
+		this.frame = 0;
+	}
+	
+	/**
+	 * Limit a block of a stereo mix bus in place.  The block that comes out is
+	 * delayed by {@link #DELAY_FRAMES} frames.  Processing silence lets out
+	 * the frames held back, limited just as they would have been.
+	 * @param left left channel of the bus
+	 * @param right right channel of the bus
+	 * @param numFrames number of frames to process from the start of the bus
+	 */
+	public void process(float[] left, float[] right, int numFrames) {
+		final int window = Limiter.LOOKAHEAD_FRAMES;
+		for (int i = 0; i < numFrames; i++) {
+			float leftCurr = left[i];
+			float rightCurr = right[i];
+			//gain this frame needs to stay under the threshold
+			float peak = Math.max(Math.abs(leftCurr), Math.abs(rightCurr));
+			float needed = (peak > this.threshold) ? this.threshold / peak :
+				1.0f;
+			//hold the smallest needed gain over the window
+			if (this.minCount > 0 &&
+					this.minFrames[this.minHead] <= this.frame - window) {
+				this.minHead = (this.minHead + 1) % window;
+				this.minCount--;
+			}
+			while (this.minCount > 0 && this.minGains[(this.minHead +
+					this.minCount - 1) % window] >= needed) {
+				this.minCount--;
+			}
+			int tail = (this.minHead + this.minCount) % window;
+			this.minGains[tail] = needed;
+			this.minFrames[tail] = this.frame;
+			this.minCount++;
+			float held = this.minGains[this.minHead];
+			//come down right away, recover slowly
+			if (held < this.releasedGain) {
+				this.releasedGain = held;
+			}
+			else {
+				this.releasedGain += (held - this.releasedGain) *
+					this.releaseCoefficient;
+			}
+			//then smooth over the window so the gain ramps into peaks
+			this.averageSum += this.releasedGain -
+				this.averageGains[this.averagePosition];
+			this.averageGains[this.averagePosition] = this.releasedGain;
+			this.averagePosition = (this.averagePosition + 1) % window;
+			float gain = (float)(this.averageSum / window);
+			//apply it to the delayed frame it was worked out for
+			left[i] = this.delayLeft[this.delayPosition] * gain;
+			right[i] = this.delayRight[this.delayPosition] * gain;
+			this.delayLeft[this.delayPosition] = leftCurr;
+			this.delayRight[this.delayPosition] = rightCurr;
+			this.delayPosition = (this.delayPosition + 1) %
+				this.delayLeft.length;
+			this.frame++;
+		}
+	}
+	
+}
@@ -26,6 +26,7 @@
  */
 package kuusisto.tinysound.internal;
 
+import kuusisto.tinysound.Bus;
 import kuusisto.tinysound.Music;
 import kuusisto.tinysound.TinySound;
 import kuusisto.tinysound.event.MusicEvent;
@@ -42,6 +43,8 @@ public class MemMusic implements Music {
 	private byte[] right;
 	private Mixer mixer;
 	private MusicReference reference;
+	private final MusicEvent[] events; //reused for every event
+	private AssetCache.Entry cached; //shared data, null if not cached
 	
 	/**
 	 * Construct a new MemMusic with the given music data and the Mixer with
@@ -54,19 +57,36 @@ public class MemMusic implements Music {
 		this.left = left;
 		this.right = right;
 		this.mixer = mixer;
+		//events are immutable, so one per action is all that's needed
+		this.events = new MusicEvent[MusicEvent.Action.values().length];
+		for (MusicEvent.Action action : MusicEvent.Action.values()) {
+			this.events[action.ordinal()] = new MusicEvent(this, action);
+		}
 		this.reference = new MemMusicReference(this.left, this.right, false,
-				false, 0, 0, 0, 1.0, 0.0);
+				false, 0, 0, 0, 1.0, 0.0, this.mixer.getBus(Bus.MUSIC),
+				this.mixer.getEventHandler());
 		this.mixer.registerMusicReference(this.reference);
 	}
 	
+	/**
+	 * Construct a new MemMusic with cached music data and the Mixer with
+	 * which to register this MemMusic.  The entry is released when this
+	 * MemMusic is unloaded.
+	 * @param cached the cache entry holding the music data
+	 * @param mixer Mixer with which this Music is registered
+	 */
+	public MemMusic(AssetCache.Entry cached, Mixer mixer) {
+		this(cached.getLeft(), cached.getRight(), mixer);
+		this.cached = cached;
+	}
+	
 	/**
 	 * Play this MemMusic and loop if specified.
 	 * @param loop if this MemMusic should loop
 	 */
 	@Override
 	public void play(boolean loop) {
-		this.reference.setLoop(loop);
-		this.reference.setPlaying(true);
+		this.playAt(0, loop);
 	}
 	
 	/**
@@ -76,9 +96,7 @@ public class MemMusic implements Music {
 	 */
 	@Override
 	public void play(boolean loop, double volume) {
-		this.setLoop(loop);
-		this.setVolume(volume);
-		this.reference.setPlaying(true);
+		this.playAt(0, loop, volume);
 	}
 	
 	/**
@@ -91,10 +109,54 @@ public class MemMusic implements Music {
 	 */
 	@Override
 	public void play(boolean loop, double volume, double pan) {
+		this.playAt(0, loop, volume, pan);
+	}
+	
+	/**
+	 * Play this MemMusic starting exactly on the given engine frame and loop if
+	 * specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this MemMusic should loop
+	 */
+	@Override
+	public void playAt(long engineFrame, boolean loop) {
+		this.reference.setLoop(loop);
+		this.reference.setStartFrame(engineFrame);
+		this.start();
+	}
+	
+	/**
+	 * Play this MemMusic starting exactly on the given engine frame at the
+	 * specified volume and loop if specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this MemMusic should loop
+	 * @param volume the volume to play the this MemMusic
+	 */
+	@Override
+	public void playAt(long engineFrame, boolean loop, double volume) {
+		this.setLoop(loop);
+		this.setVolume(volume);
+		this.reference.setStartFrame(engineFrame);
+		this.start();
+	}
+	
+	/**
+	 * Play this MemMusic starting exactly on the given engine frame at the
+	 * specified volume and pan, and loop if specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this MemMusic should loop
+	 * @param volume the volume to play the this MemMusic
+	 * @param pan the pan at which to play this MemMusic [-1.0,1.0], values
+	 * outside the valid range will be ignored
+	 */
+	@Override
+	public void playAt(long engineFrame, boolean loop, double volume,
+			double pan) {
 		this.setLoop(loop);
 		this.setVolume(volume);
 		this.setPan(pan);
-		this.reference.setPlaying(true);
+		this.reference.setStartFrame(engineFrame);
+		this.start();
 	}
 	
 	/**
@@ -119,6 +181,17 @@ public class MemMusic implements Music {
 	 */
 	@Override
 	public void resume() {
+		this.start();
+	}
+	
+	/**
+	 * Set this MemMusic playing, noting the play in the asset cache so it is
+	 * kept longer than audio played less recently.
+	 */
+	private void start() {
+		if (this.cached != null) {
+			this.cached.markPlayed();
+		}
 		this.reference.setPlaying(true);
 	}
 	
@@ -296,19 +369,42 @@ public class MemMusic implements Music {
 		}
 	}
 	
+	/**
+	 * Get the Bus this MemMusic is played on.
+	 * @return the Bus of this MemMusic
+	 */
+	@Override
+	public Bus getBus() {
+		return this.reference.getBus();
+	}
+	
+	/**
+	 * Set the Bus this MemMusic is played on.
+	 * @param bus the Bus to play this MemMusic on
+	 * @throws IllegalArgumentException if the Bus does not belong to the
+	 * same TinySound system
+	 */
+	@Override
+	public void setBus(Bus bus) {
+		this.reference.setBus(this.mixer.getBus(bus));
+	}
+	
 	/**
 	 * Unload this MemMusic from the system.  Attempts to use this MemMusic
 	 * after unloading will result in error.
 	 */
 	@Override
 	public void unload() {
-		//unregister the reference
+		//unregister the reference (the mixer will dispose of it)
 		this.mixer.unRegisterMusicReference(this.reference);
-		this.reference.dispose();
 		this.mixer = null;
 		this.left = null;
 		this.right = null;
 		this.reference = null;
+		if (this.cached != null) {
+			this.cached.release();
+			this.cached = null;
+		}
 	}
 	
 	/////////////
@@ -330,8 +426,13 @@ public class MemMusic implements Music {
 		private int startLoopPosition;
 		private int endLoopPosition;
 		private int position;
-		private double volume;
-		private double pan;
+		//targets the mixer ramps to, so they are only ever read or written
+		private volatile double volume;
+		private volatile double pan;
+		private volatile long startFrame; //engine frame to start on
+		private final EventHandler eventHandler;
+		private final VoiceGain gain;
+		private MixBus bus;
 		
 		/**
 		 * Construct a new MemMusicReference with the given audio data and
@@ -344,10 +445,13 @@ public class MemMusic implements Music {
 		 * @param position byte index position in music data
 		 * @param volume volume to play the music
 		 * @param pan pan to play the music
+		 * @param bus bus on which to play the music
+		 * @param eventHandler event handler to fire music events to
 		 */
 		public MemMusicReference(byte[] left, byte[] right, boolean playing,
 				boolean loop, int startLoopPosition, int endLoopPosition, int position,
-				double volume, double pan) {
+				double volume, double pan, MixBus bus,
+				EventHandler eventHandler) {
 			this.left = left;
 			this.right = right;
 			this.playing = playing;
@@ -357,6 +461,10 @@ public class MemMusic implements Music {
 			this.position = position;
 			this.volume = volume;
 			this.pan = pan;
+			this.startFrame = 0;
+			this.eventHandler = eventHandler;
+			this.gain = new VoiceGain();
+			this.bus = bus;
 		}
 		
 		/**
@@ -404,12 +512,22 @@ public class MemMusic implements Music {
 			return this.endLoopPosition;
 		}
 		
+		/**
+		 * Get the engine frame this MemMusicReference starts playing on once it
+		 * is set to play.
+		 * @return the engine frame this MemMusicReference starts on
+		 */
+		@Override
+		public long getStartFrame() {
+			return this.startFrame;
+		}
+		
 		/**
 		 * Get the volume of this MemMusicReference.
 		 * @return volume of this MemMusicReference
 		 */
 		@Override
-		public synchronized double getVolume() {
+		public double getVolume() {
 			return this.volume;
 		}
 
@@ -418,9 +536,36 @@ public class MemMusic implements Music {
 		 * @return pan of this MemMusicReference
 		 */
 		@Override
-		public synchronized double getPan() {
+		public double getPan() {
 			return this.pan;
 		}
+
+		/**
+		 * Get the gain matrix the Mixer uses for this MemMusicReference.
+		 * @return gain matrix of this MemMusicReference
+		 */
+		@Override
+		public VoiceGain getGain() {
+			return this.gain;
+		}
+		
+		/**
+		 * Get the bus this MemMusicReference is played on.
+		 * @return bus of this MemMusicReference
+		 */
+		@Override
+		public synchronized MixBus getBus() {
+			return this.bus;
+		}
+		
+		/**
+		 * Set the bus this MemMusicReference is played on.
+		 * @param bus the bus to play this MemMusicReference on
+		 */
+		@Override
+		public synchronized void setBus(MixBus bus) {
+			this.bus = bus;
+		}
 		
 		/**
 		 * Set whether this MemMusicReference is playing.
@@ -474,9 +619,19 @@ public class MemMusic implements Music {
 		 * @param volume the desired volume of this MemMusicReference
 		 */
 		@Override
-		public synchronized void setVolume(double volume) {
+		public void setVolume(double volume) {
 			this.volume = volume;
 		}
+		
+		/**
+		 * Set the engine frame this MemMusicReference starts playing on once it
+		 * is set to play.
+		 * @param frame the engine frame to start on
+		 */
+		@Override
+		public void setStartFrame(long frame) {
+			this.startFrame = frame;
+		}
 
 		/**
 		 * Set the pan of this MemMusicReference.  Must be between -1.0 (full
@@ -484,7 +639,7 @@ public class MemMusic implements Music {
 		 * @param pan the desired pan of this MemMusicReference
 		 */
 		@Override
-		public synchronized void setPan(double pan) {
+		public void setPan(double pan) {
 			this.pan = pan;
 		}
 		
@@ -515,55 +670,89 @@ public class MemMusic implements Music {
 		 */
 		@Override
 		public synchronized void skipBytes(long num) {
-			for (int i = 0; i < num; i++) {
-				this.position++;
-				//wrap if looping
-				if (this.loop && this.position >= this.endLoopPosition) {
-				    this.fireEvent(MusicEvent.Action.LOOP);
-				    this.position = this.startLoopPosition;
-				}
-				//stop otherwise
-				else if (this.position >= this.left.length) {
-				    this.setPlaying(false);
-				}
+			if (num <= 0) {
+				return;
+			}
+			long nextPosition = this.position + num;
+			//wrap if looping
+			if (this.loop && nextPosition >= this.endLoopPosition) {
+				//wrapping takes at least one sample, like reading would
+				long toLoopEnd = Math.max(2,
+						this.endLoopPosition - this.position);
+				long loopLength = Math.max(2,
+						this.endLoopPosition - this.startLoopPosition);
+				//go around the loop as many times as it takes in one step
+				long bytesOver = num - toLoopEnd;
+				this.position = this.startLoopPosition +
+						(int)(bytesOver % loopLength);
+				//and report it once, with how many times around it was
+				long loops = 1 + (bytesOver / loopLength);
+				this.fireLoopEvent((int)Math.min(loops, Integer.MAX_VALUE));
+			}
+			//stop otherwise
+			else if (nextPosition >= this.left.length) {
+				this.position = this.left.length;
+				this.setPlaying(false);
+			}
+			else {
+				this.position = (int)nextPosition;
 			}
 		}
 		
 		/**
-		 * Get the next two bytes from the music data in the specified
-		 * endianness.
-		 * @param data length-2 array to write in next two bytes from each
-		 * channel
-		 * @param bigEndian true if the bytes should be read big-endian
+		 * Read the next frames of music data into the given buffers as signed
+		 * 16-bit sample values.  Looping is handled while reading, and reading
+		 * stops early if this MemMusicReference stops playing.
+		 * @param left buffer to write left channel samples into
+		 * @param right buffer to write right channel samples into
+		 * @param offset index in the buffers at which to start writing
+		 * @param numFrames maximum number of frames to read
+		 * @return number of frames actually read
 		 */
 		@Override
-		public synchronized void nextTwoBytes(int[] data, boolean bigEndian) {
-			if (bigEndian) {
-				//left
-				data[0] = ((this.left[this.position] << 8) |
-						(this.left[this.position + 1] & 0xFF));
-				//right
-				data[1] = ((this.right[this.position] << 8) |
-						(this.right[this.position + 1] & 0xFF));
-			}
-			else {
-				//left
-				data[0] = ((this.left[this.position + 1] << 8) |
-						(this.left[this.position] & 0xFF));
-				//right
-				data[1] = ((this.right[this.position + 1] << 8) |
-						(this.right[this.position] & 0xFF));
-			}
-			this.position += 2;
-			//wrap if looping
-			if (this.loop && this.position >= this.endLoopPosition) {
-			    this.fireEvent(MusicEvent.Action.LOOP);
-			    this.position = this.startLoopPosition;
-			}
-			//stop otherwise
-			else if (this.position >= this.left.length) {
-			    this.setPlaying(false);
+		public synchronized int nextFrames(int[] left, int[] right,
+				int offset, int numFrames) {
+			int numRead = 0;
+			while (numRead < numFrames && this.playing &&
+					this.position < this.left.length) {
+				//read up to wherever we need to wrap or stop
+				int end = this.loop ? this.endLoopPosition : this.left.length;
+				if (end > this.left.length) {
+					end = this.left.length;
+				}
+				//always make progress, just like reading frame by frame
+				int frames = (end - this.position) / 2;
+				if (frames < 1) {
+					frames = 1;
+				}
+				if (frames > numFrames - numRead) {
+					frames = numFrames - numRead;
+				}
+				byte[] leftData = this.left;
+				byte[] rightData = this.right;
+				int pos = this.position;
+				//little-endian samples for each channel
+				for (int i = offset + numRead, stop = i + frames; i < stop;
+						i++) {
+					left[i] = ((leftData[pos + 1] << 8) |
+							(leftData[pos] & 0xFF));
+					right[i] = ((rightData[pos + 1] << 8) |
+							(rightData[pos] & 0xFF));
+					pos += 2;
+				}
+				this.position = pos;
+				numRead += frames;
+				//wrap if looping
+				if (this.loop && this.position >= this.endLoopPosition) {
+					this.fireEvent(MusicEvent.Action.LOOP);
+					this.position = this.startLoopPosition;
+				}
+				//stop otherwise
+				else if (this.position >= this.left.length) {
+					this.setPlaying(false);
+				}
 			}
+			return numRead;
 		}
 
 		/**
@@ -580,13 +769,28 @@ public class MemMusic implements Music {
 		
 		/**
 		 * Create a new music event with {@code action} as action and
-		 * fire to mixer's EventHandler.
+		 * fire to the EventHandler.
 		 * @param action event action
 		 */
 		private void fireEvent(MusicEvent.Action action)
 		{
-		    MusicEvent event = new MusicEvent(MemMusic.this, action);
-                    MemMusic.this.mixer.getEventHandler().fireMusicEvent(event);
+		    MusicEvent event = MemMusic.this.events[action.ordinal()];
+		    this.eventHandler.fireMusicEvent(event);
+		}
+		
+		/**
+		 * Fire a LOOP event for going around the loop a number of times at
+		 * once.
+		 * @param loops number of times around the loop
+		 */
+		private void fireLoopEvent(int loops) {
+			if (loops == 1) {
+				this.fireEvent(MusicEvent.Action.LOOP);
+			}
+			else {
+				this.eventHandler.fireMusicEvent(new MusicEvent(MemMusic.this,
+						MusicEvent.Action.LOOP, loops));
+			}
 		}
 		
 	}
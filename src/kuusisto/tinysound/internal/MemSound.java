@@ -26,6 +26,7 @@
  */
 package kuusisto.tinysound.internal;
 
+import kuusisto.tinysound.Bus;
 import kuusisto.tinysound.Sound;
 import kuusisto.tinysound.event.SoundEvent;
 
@@ -40,7 +41,10 @@ public class MemSound implements Sound {
 	private byte[] left;
 	private byte[] right;
 	private Mixer mixer;
+	private MixBus bus; //bus to play on
+	private final SoundEvent[] events; //reused for every play
 	private final int ID; //unique ID to match references
+	private AssetCache.Entry cached; //shared data, null if not cached
 	
 	/**
 	 * Construct a new MemSound with the given data and Mixer which will handle
@@ -54,7 +58,26 @@ public class MemSound implements Sound {
 		this.left = left;
 		this.right = right;
 		this.mixer = mixer;
+		this.bus = mixer.getBus(Bus.SFX);
 		this.ID = id;
+		//events are immutable, so one per action is all that's needed
+		this.events = new SoundEvent[SoundEvent.Action.values().length];
+		for (SoundEvent.Action action : SoundEvent.Action.values()) {
+			this.events[action.ordinal()] = new SoundEvent(this, action);
+		}
+	}
+	
+	/**
+	 * Construct a new MemSound with cached data and the Mixer which will
+	 * handle this MemSound.  The entry is released when this MemSound is
+	 * unloaded.
+	 * @param cached the cache entry holding the sound data
+	 * @param mixer Mixer that will handle this MemSound
+	 * @param id unique ID of this MemSound
+	 */
+	public MemSound(AssetCache.Entry cached, Mixer mixer, int id) {
+		this(cached.getLeft(), cached.getRight(), mixer, id);
+		this.cached = cached;
 	}
 	
 	/**
@@ -82,12 +105,98 @@ public class MemSound implements Sound {
 	 */
 	@Override
 	public void play(double volume, double pan) {
+		this.play(volume, pan, 0);
+	}
+	
+	/**
+	 * Plays this MemSound with a specified volume, pan and priority.
+	 * @param volume the volume at which to play this MemSound
+	 * @param pan the pan value to play this MemSound [-1.0,1.0], values outside
+	 * the valid range will assume no panning (0.0)
+	 * @param priority the priority of this play, higher values are more
+	 * important
+	 */
+	@Override
+	public void play(double volume, double pan, int priority) {
+		this.playAt(0, volume, pan, priority);
+	}
+	
+	/**
+	 * Plays this MemSound starting exactly on the given engine frame.
+	 * @param engineFrame the engine frame to start on
+	 */
+	@Override
+	public void playAt(long engineFrame) {
+		this.playAt(engineFrame, 1.0);
+	}
+	
+	/**
+	 * Plays this MemSound starting exactly on the given engine frame with a
+	 * specified volume.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this MemSound
+	 */
+	@Override
+	public void playAt(long engineFrame, double volume) {
+		this.playAt(engineFrame, volume, 0.0);
+	}
+	
+	/**
+	 * Plays this MemSound starting exactly on the given engine frame with a
+	 * specified volume and pan.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this MemSound
+	 * @param pan the pan value to play this MemSound [-1.0,1.0], values
+	 * outside the valid range will assume no panning (0.0)
+	 */
+	@Override
+	public void playAt(long engineFrame, double volume, double pan) {
+		this.playAt(engineFrame, volume, pan, 0);
+	}
+	
+	/**
+	 * Plays this MemSound starting exactly on the given engine frame with a
+	 * specified volume, pan and priority.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this MemSound
+	 * @param pan the pan value to play this MemSound [-1.0,1.0], values
+	 * outside the valid range will assume no panning (0.0)
+	 * @param priority the priority of this play, higher values are more
+	 * important
+	 */
+	@Override
+	public void playAt(long engineFrame, double volume, double pan,
+			int priority) {
+		if (this.cached != null) {
+			this.cached.markPlayed();
+		}
 		//dispatch a sound refence to the mixer
 		SoundReference ref = new MemSoundReference(this.left, this.right,
-				volume, pan, this.ID);
+				volume, pan, priority, engineFrame, this.bus, this.ID);
 		this.mixer.registerSoundReference(ref);
 	}
 	
+	/**
+	 * Get the Bus this MemSound is played on.
+	 * @return the Bus of this MemSound
+	 */
+	@Override
+	public Bus getBus() {
+		return this.bus;
+	}
+	
+	/**
+	 * Set the Bus this MemSound is played on.  This only affects later plays
+	 * of this MemSound.
+	 * @param bus the Bus to play this MemSound on
+	 * @throws IllegalArgumentException if the Bus does not belong to the
+	 * same TinySound system
+	 */
+	@Override
+	public void setBus(Bus bus) {
+		this.bus = this.mixer.getBus(bus);
+	}
+	
 	/**
 	 * Stops this MemSound from playing.  Note that if this MemSound was played
 	 * repeatedly in an overlapping fashion, all instances of this MemSound
@@ -108,6 +217,10 @@ public class MemSound implements Sound {
 		this.mixer = null;
 		this.left = null;
 		this.right = null;
+		if (this.cached != null) {
+			this.cached.release();
+			this.cached = null;
+		}
 	}
 	
 	/////////////
@@ -129,6 +242,10 @@ public class MemSound implements Sound {
 		private int position;
 		private double volume;
 		private double pan;
+		private int priority;
+		private final long startFrame;
+		private final VoiceGain gain;
+		private final MixBus bus;
 		
 		/**
 		 * Construct a new MemSoundReference with the given reference data.
@@ -136,14 +253,22 @@ public class MemSound implements Sound {
 		 * @param right right channel of sound data
 		 * @param volume volume at which to play the sound
 		 * @param pan pan at which to play the sound
+		 * @param priority priority at which to play the sound
+		 * @param startFrame engine frame on which to start the sound
+		 * @param bus bus on which to play the sound
 		 * @param soundID ID of the MemSound for which this is a reference
 		 */
 		public MemSoundReference(byte[] left, byte[] right, double volume,
-				double pan, int soundID) {
+				double pan, int priority, long startFrame, MixBus bus,
+				int soundID) {
 			this.left = left;
 			this.right = right;
 			this.volume = (volume >= 0.0) ? volume : 1.0;
 			this.pan = (pan >= -1.0 && pan <= 1.0) ? pan : 0.0;
+			this.priority = priority;
+			this.startFrame = startFrame;
+			this.gain = new VoiceGain();
+			this.bus = bus;
 			this.position = 0;
 			this.SOUND_ID = soundID;
 		}
@@ -174,6 +299,42 @@ public class MemSound implements Sound {
 		public double getPan() {
 			return this.pan;
 		}
+
+		/**
+		 * Get the gain matrix the Mixer uses for this MemSoundReference.
+		 * @return gain matrix of this MemSoundReference
+		 */
+		@Override
+		public VoiceGain getGain() {
+			return this.gain;
+		}
+		
+		/**
+		 * Get the bus this MemSoundReference is played on.
+		 * @return bus of this MemSoundReference
+		 */
+		@Override
+		public MixBus getBus() {
+			return this.bus;
+		}
+		
+		/**
+		 * Gets the priority of this MemSoundReference.
+		 * @return priority of this MemSoundReference
+		 */
+		@Override
+		public int getPriority() {
+			return this.priority;
+		}
+		
+		/**
+		 * Get the engine frame this MemSoundReference starts playing on.
+		 * @return the engine frame this MemSoundReference starts on
+		 */
+		@Override
+		public long getStartFrame() {
+			return this.startFrame;
+		}
 		
 		/**
 		 * Get the number of bytes remaining for each channel.
@@ -194,31 +355,36 @@ public class MemSound implements Sound {
 		}
 		
 		/**
-		 * Get the next two bytes from the sound data in the specified
-		 * endianness.
-		 * @param data length-2 array to write in next two bytes from each
-		 * channel
-		 * @param bigEndian true if the bytes should be read big-endian
+		 * Read the next frames of sound data into the given buffers as signed
+		 * 16-bit sample values.  Reading stops early if this
+		 * MemSoundReference runs out of data.
+		 * @param left buffer to write left channel samples into
+		 * @param right buffer to write right channel samples into
+		 * @param offset index in the buffers at which to start writing
+		 * @param numFrames maximum number of frames to read
+		 * @return number of frames actually read
 		 */
 		@Override
-		public void nextTwoBytes(int[] data, boolean bigEndian) {
-			if (bigEndian) {
-				//left
-				data[0] = ((this.left[this.position] << 8) |
-						(this.left[this.position + 1] & 0xFF));
-				//right
-				data[1] = ((this.right[this.position] << 8) |
-						(this.right[this.position + 1] & 0xFF));
+		public int nextFrames(int[] left, int[] right, int offset,
+				int numFrames) {
+			//never read past the end of the sound data
+			int available = (this.left.length - this.position) / 2;
+			int frames = (numFrames < available) ? numFrames : available;
+			if (frames <= 0) {
+				return 0;
 			}
-			else {
-				//left
-				data[0] = ((this.left[this.position + 1] << 8) |
-						(this.left[this.position] & 0xFF));
-				//right
-				data[1] = ((this.right[this.position + 1] << 8) |
-						(this.right[this.position] & 0xFF));
+			byte[] leftData = this.left;
+			byte[] rightData = this.right;
+			int pos = this.position;
+			//little-endian samples for each channel
+			for (int i = offset, end = offset + frames; i < end; i++) {
+				left[i] = ((leftData[pos + 1] << 8) | (leftData[pos] & 0xFF));
+				right[i] = ((rightData[pos + 1] << 8) |
+						(rightData[pos] & 0xFF));
+				pos += 2;
 			}
-			this.position += 2;
+			this.position = pos;
+			return frames;
 		}
 
 		/**
@@ -235,7 +401,7 @@ public class MemSound implements Sound {
 		@Override
 		public void fireEvent(EventHandler handler, SoundEvent.Action action)
                 {
-                    SoundEvent event = new SoundEvent(MemSound.this, action);
+                    SoundEvent event = MemSound.this.events[action.ordinal()];
                     handler.fireSoundEvent(event);
                 }
 	}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import kuusisto.tinysound.EngineMetricsMXBean;
+
+/**
+ * The Metrics class collects the live metrics of the TinySound engine.  Every
+ * counter has a single writer, the thread reading from the Mixer, so recording
+ * is a plain volatile write with no locking or atomic read-modify-write.  Any
+ * thread may read them.  Metrics is an internal class of the TinySound system
+ * and should be of no real concern to the average user of TinySound.
+ * 
+ * @author Finn Kuusisto
+ */
+public class Metrics implements EngineMetricsMXBean {
+	
+	//exclusive upper bounds of the render time histogram buckets
+	private static final long[] BUCKET_BOUNDS = {50000L, 100000L, 250000L,
+		500000L, 1000000L, 2500000L, 5000000L, 10000000L, 25000000L};
+	
+	private volatile long blocksRendered;
+	private volatile long framesRendered;
+	private volatile long framesSkipped;
+	private volatile long underruns;
+	private volatile long totalRenderNanos;
+	private volatile long maxRenderNanos;
+	private final AtomicLongArray renderTimeHistogram;
+	private volatile int activeSounds;
+	private volatile int activeMusic;
+	private volatile int commandQueueDepth;
+	private final EventHandler eventHandler;
+	
+	/**
+	 * Construct a new Metrics with every counter at zero.
+	 * @param eventHandler the event handler to report the event queue of
+	 */
+	public Metrics(EventHandler eventHandler) {
+		this.renderTimeHistogram =
+			new AtomicLongArray(Metrics.BUCKET_BOUNDS.length + 1);
+		this.eventHandler = eventHandler;
+	}
+	
+	/**
+	 * Record a read from the Mixer.  Only the reading thread may call this.
+	 * @param numBlocks the number of blocks mixed
+	 * @param numFrames the number of frames mixed
+	 * @param nanos the time taken
+	 */
+	public void recordRender(int numBlocks, int numFrames, long nanos) {
+		this.blocksRendered += numBlocks;
+		this.framesRendered += numFrames;
+		this.totalRenderNanos += nanos;
+		if (nanos > this.maxRenderNanos) {
+			this.maxRenderNanos = nanos;
+		}
+		int bucket = 0;
+		while (bucket < Metrics.BUCKET_BOUNDS.length &&
+				nanos >= Metrics.BUCKET_BOUNDS[bucket]) {
+			bucket++;
+		}
+		this.renderTimeHistogram.lazySet(bucket,
+				this.renderTimeHistogram.get(bucket) + 1);
+	}
+	
+	/**
+	 * Record the voices that were mixed in a block.  Only the reading thread
+	 * may call this.
+	 * @param numSounds the number of sounds playing
+	 * @param numMusic the number of music playing
+	 */
+	public void recordVoices(int numSounds, int numMusic) {
+		this.activeSounds = numSounds;
+		this.activeMusic = numMusic;
+	}
+	
+	/**
+	 * Record the number of commands waiting at the start of a read.  Only the
+	 * reading thread may call this.
+	 * @param depth the number of waiting commands
+	 */
+	public void recordCommandQueueDepth(int depth) {
+		this.commandQueueDepth = depth;
+	}
+	
+	/**
+	 * Record frames skipped.  Only the reading thread may call this.
+	 * @param numFrames the number of frames skipped
+	 */
+	public void recordSkip(int numFrames) {
+		this.framesSkipped += numFrames;
+	}
+	
+	/**
+	 * Record the output line running out of audio.  Only the reading thread
+	 * may call this.
+	 */
+	public void recordUnderrun() {
+		this.underruns++;
+	}
+	
+	@Override
+	public long getBlocksRendered() {
+		return this.blocksRendered;
+	}
+	
+	@Override
+	public long getFramesRendered() {
+		return this.framesRendered;
+	}
+	
+	@Override
+	public long getFramesSkipped() {
+		return this.framesSkipped;
+	}
+	
+	@Override
+	public long getUnderruns() {
+		return this.underruns;
+	}
+	
+	@Override
+	public long getTotalRenderNanos() {
+		return this.totalRenderNanos;
+	}
+	
+	@Override
+	public long getMaxRenderNanos() {
+		return this.maxRenderNanos;
+	}
+	
+	@Override
+	public long[] getRenderTimeHistogram() {
+		long[] histogram = new long[this.renderTimeHistogram.length()];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = this.renderTimeHistogram.get(i);
+		}
+		return histogram;
+	}
+	
+	@Override
+	public long[] getRenderTimeBucketBounds() {
+		return Metrics.BUCKET_BOUNDS.clone();
+	}
+	
+	@Override
+	public int getActiveSounds() {
+		return this.activeSounds;
+	}
+	
+	@Override
+	public int getActiveMusic() {
+		return this.activeMusic;
+	}
+	
+	@Override
+	public int getCommandQueueDepth() {
+		return this.commandQueueDepth;
+	}
+	
+	@Override
+	public int getEventQueueDepth() {
+		return this.eventHandler.getQueueDepth();
+	}
+	
+	@Override
+	public long getDroppedEvents() {
+		return this.eventHandler.getDroppedEvents();
+	}
+	
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import kuusisto.tinysound.Bus;
+
+/**
+ * The MixBus class is the Mixer's implementation of the Bus interface.  Its
+ * settings are read once per block by the thread reading from the Mixer, and
+ * its volume is folded into the gain matrix of each of its voices.  MixBus is
+ * an internal class of the TinySound system and should be of no real concern
+ * to the average user of TinySound.
+ * 
+ * @author Finn Kuusisto
+ */
+public class MixBus implements Bus {
+	
+	private final String name;
+	private volatile double volume;
+	private volatile boolean muted;
+	
+	/**
+	 * Construct a new, unmuted MixBus at full volume.
+	 * @param name the name of the MixBus
+	 */
+	public MixBus(String name) {
+		this.name = name;
+		this.volume = 1.0;
+		this.muted = false;
+	}
+	
+	/**
+	 * Get the name of this MixBus.
+	 * @return name of this MixBus
+	 */
+	@Override
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Get the volume of this MixBus.
+	 * @return volume of this MixBus
+	 */
+	@Override
+	public double getVolume() {
+		return this.volume;
+	}
+	
+	/**
+	 * Set the volume of this MixBus.  Negative values will be ignored.
+	 * @param volume the desired volume of this MixBus
+	 */
+	@Override
+	public void setVolume(double volume) {
+		if (volume >= 0.0) {
+			this.volume = volume;
+		}
+	}
+	
+	/**
+	 * Determine if this MixBus is muted.
+	 * @return true if this MixBus is muted
+	 */
+	@Override
+	public boolean isMuted() {
+		return this.muted;
+	}
+	
+	/**
+	 * Set whether this MixBus is muted.
+	 * @param muted whether this MixBus should be muted
+	 */
+	@Override
+	public void setMuted(boolean muted) {
+		this.muted = muted;
+	}
+	
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+/**
+ * The MixKernel class holds the inner loops used to mix blocks of audio data
+ * on a float mix bus.  Every loop is a straight pass over primitive arrays
+ * with no branches or calls in its body so that the JIT can compile it to SIMD
+ * instructions.  MixKernel is an internal class of the TinySound system and
+ * should be of no real concern to the average user of TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public final class MixKernel {
+
+	//no instances
+	private MixKernel() {}
+
+	/**
+	 * Clear a block of a stereo mix bus.
+	 * @param left left channel of the bus
+	 * @param right right channel of the bus
+	 * @param numFrames number of frames to clear from the start of the bus
+	 */
+	public static void clear(float[] left, float[] right, int numFrames) {
+		for (int i = 0; i < numFrames; i++) {
+			left[i] = 0.0f;
+			right[i] = 0.0f;
+		}
+	}
+
+	/**
+	 * Add a block of voice data to a stereo mix bus through a 2x2 gain matrix.
+	 * @param srcLeft left channel samples of the voice
+	 * @param srcRight right channel samples of the voice
+	 * @param dstLeft left channel of the bus
+	 * @param dstRight right channel of the bus
+	 * @param numFrames number of frames to mix from the start of the buffers
+	 * @param ll gain from voice left to bus left
+	 * @param lr gain from voice right to bus left
+	 * @param rl gain from voice left to bus right
+	 * @param rr gain from voice right to bus right
+	 */
+	public static void accumulate(int[] srcLeft, int[] srcRight,
+			float[] dstLeft, float[] dstRight, int numFrames, float ll,
+			float lr, float rl, float rr) {
+		for (int i = 0; i < numFrames; i++) {
+			float leftCurr = srcLeft[i];
+			float rightCurr = srcRight[i];
+			dstLeft[i] += (ll * leftCurr) + (lr * rightCurr);
+			dstRight[i] += (rl * leftCurr) + (rr * rightCurr);
+		}
+	}
+
+	/**
+	 * Add a block of voice data to a stereo mix bus through a 2x2 gain matrix
+	 * that moves linearly from one set of gains to another over the block,
+	 * reaching the end gains on the last frame.
+	 * @param srcLeft left channel samples of the voice
+	 * @param srcRight right channel samples of the voice
+	 * @param dstLeft left channel of the bus
+	 * @param dstRight right channel of the bus
+	 * @param numFrames number of frames to mix from the start of the buffers
+	 * @param startLl gain from voice left to bus left before the block
+	 * @param startLr gain from voice right to bus left before the block
+	 * @param startRl gain from voice left to bus right before the block
+	 * @param startRr gain from voice right to bus right before the block
+	 * @param ll gain from voice left to bus left at the end of the block
+	 * @param lr gain from voice right to bus left at the end of the block
+	 * @param rl gain from voice left to bus right at the end of the block
+	 * @param rr gain from voice right to bus right at the end of the block
+	 */
+	public static void accumulateRamp(int[] srcLeft, int[] srcRight,
+			float[] dstLeft, float[] dstRight, int numFrames, float startLl,
+			float startLr, float startRl, float startRr, float ll, float lr,
+			float rl, float rr) {
+		final float stepLl = (ll - startLl) / numFrames;
+		final float stepLr = (lr - startLr) / numFrames;
+		final float stepRl = (rl - startRl) / numFrames;
+		final float stepRr = (rr - startRr) / numFrames;
+		for (int i = 0; i < numFrames; i++) {
+			float t = i + 1;
+			float leftCurr = srcLeft[i];
+			float rightCurr = srcRight[i];
+			dstLeft[i] += ((startLl + (stepLl * t)) * leftCurr) +
+				((startLr + (stepLr * t)) * rightCurr);
+			dstRight[i] += ((startRl + (stepRl * t)) * leftCurr) +
+				((startRr + (stepRr * t)) * rightCurr);
+		}
+	}
+
+	/**
+	 * Add a block of one stereo mix bus to another.
+	 * @param srcLeft left channel of the bus to add
+	 * @param srcRight right channel of the bus to add
+	 * @param dstLeft left channel of the bus to add to
+	 * @param dstRight right channel of the bus to add to
+	 * @param numFrames number of frames to add from the start of the buses
+	 */
+	public static void add(float[] srcLeft, float[] srcRight, float[] dstLeft,
+			float[] dstRight, int numFrames) {
+		for (int i = 0; i < numFrames; i++) {
+			dstLeft[i] += srcLeft[i];
+			dstRight[i] += srcRight[i];
+		}
+	}
+
+	/**
+	 * Clip a block of a stereo mix bus to 16-bit range and write it as
+	 * little-endian, interleaved, signed PCM.
+	 * @param left left channel of the bus
+	 * @param right right channel of the bus
+	 * @param data the buffer to write the bytes into
+	 * @param offset the start index to write bytes into
+	 * @param numFrames number of frames to write from the start of the bus
+	 */
+	public static void toBytes(float[] left, float[] right, byte[] data,
+			int offset, int numFrames) {
+		final float max = Short.MAX_VALUE;
+		final float min = Short.MIN_VALUE;
+		for (int f = 0, i = offset; f < numFrames; f++, i += 4) {
+			//clipping
+			int finalLeftValue = (int)Math.max(min, Math.min(max, left[f]));
+			int finalRightValue = (int)Math.max(min, Math.min(max, right[f]));
+			//left channel bytes
+			data[i + 1] = (byte)(finalLeftValue >> 8); //MSB
+			data[i] = (byte)finalLeftValue; //LSB
+			//then right channel bytes
+			data[i + 3] = (byte)(finalRightValue >> 8); //MSB
+			data[i + 2] = (byte)finalRightValue; //LSB
+		}
+	}
+
+}
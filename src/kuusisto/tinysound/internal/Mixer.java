@@ -27,25 +27,72 @@
 package kuusisto.tinysound.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import kuusisto.tinysound.Bus;
+import kuusisto.tinysound.PanLaw;
+import kuusisto.tinysound.StealingPolicy;
 import kuusisto.tinysound.event.SoundEvent;
 
 /**
  * The Mixer class is what does the audio data mixing for the TinySound system.
- * Mixer is an internal class of the TinySound system and should be of no real
- * concern to the average user of TinySound.
+ * Changes to the registered audio are queued by any thread and applied by the
+ * single thread that reads from the Mixer at the start of each read, so no
+ * locks are shared between the two.  Large numbers of voices can optionally be
+ * split into chunks that are mixed in parallel on a ForkJoinPool.  Mixer is
+ * an internal class of the
+ * TinySound system and should be of no real concern to the average user of
+ * TinySound.
  * 
  * @author Finn Kuusisto
  */
 public class Mixer {
 	
+	//maximum number of changes that can be waiting for the next read
+	private static final int COMMAND_QUEUE_SIZE = 1024;
+	//longest a change waits for room before the reader is given up on
+	private static final long COMMAND_WAIT_NANOS = 1000000000L;
+	
 	private List<MusicReference> musics;
 	private List<SoundReference> sounds;
-	private double globalVolume;
-	private int[] dataBuf; //buffer for reading sound data
+	private volatile double globalVolume;
+	private final MixBus[] buses;
+	private volatile int maxVoices; //maximum number of sounds mixed at once
+	private volatile StealingPolicy stealingPolicy;
+	private volatile PanLaw panLaw;
+	private volatile boolean limiterEnabled;
+	private volatile double limiterThreshold;
+	private volatile double limiterRelease;
+	private final Limiter limiter;
+	private boolean limiting; //whether the last block was limited
+	//frames of audio the limiter is holding back from the output
+	private volatile int limiterDelay;
+	//frames of silence the limiter has put into the output when enabled
+	private volatile long limiterSilence;
+	private volatile int maxBlockFrames; //most frames mixed at once
+	private volatile int parallelThreshold; //voices needed to mix in parallel
+	private final int maxTasks; //most chunks a block will be split into
+	private ForkJoinPool pool; //started the first time it's needed
+	//the first task is mixed by the reading thread onto the master bus, the
+	//rest are only used for parallel mixing
+	private MixTask[] tasks;
+	//settings for the block being mixed, shared with the tasks
+	private int blockFrames;
+	private long blockStartFrame; //engine frame of the start of the block
+	private double blockVolume;
+	private PanLaw blockPanLaw;
+	private final RingQueue<Command> commands;
+	//held by whoever reads, if reads only happen on demand, null otherwise
+	private volatile Object readLock;
+	private volatile boolean shutdown;
 	
 	private final EventHandler eventHandler;
+	private final Metrics metrics;
+	private final AudioClock clock;
+	private volatile long engineFrame; //frames mixed or skipped so far
 	
 	/**
 	 * Construct a new Mixer for TinySound system.
@@ -54,15 +101,43 @@ public class Mixer {
 		this.musics = new ArrayList<MusicReference>();
 		this.sounds = new ArrayList<SoundReference>();
 		this.globalVolume = 1.0;
-		this.dataBuf = new int[2]; //2-channel
+		this.buses = new MixBus[] {new MixBus(Bus.MUSIC), new MixBus(Bus.SFX),
+				new MixBus(Bus.UI), new MixBus(Bus.VOICE)};
+		this.maxVoices = Integer.MAX_VALUE;
+		this.stealingPolicy = StealingPolicy.OLDEST;
+		this.panLaw = PanLaw.LINEAR;
+		this.limiterEnabled = false;
+		this.limiterThreshold = 1.0;
+		this.limiterRelease = 100.0;
+		this.limiter = new Limiter();
+		this.limiting = false;
+		this.limiterDelay = 0;
+		this.limiterSilence = 0;
+		this.maxBlockFrames = 512;
+		this.parallelThreshold = Integer.MAX_VALUE;
+		this.maxTasks = Runtime.getRuntime().availableProcessors();
+		this.pool = null;
+		this.tasks = new MixTask[] {new MixTask()};
+		this.commands = new RingQueue<Command>(Mixer.COMMAND_QUEUE_SIZE,
+				new RingQueue.Factory<Command>() {
+					@Override
+					public Command create() {
+						return new Command();
+					}
+				});
+		this.readLock = null;
+		this.shutdown = false;
 		this.eventHandler = eventHandler;
+		this.metrics = new Metrics(eventHandler);
+		this.clock = new AudioClock();
+		this.engineFrame = 0;
 	}
 	
 	/**
 	 * Get the global volume for this Mixer.
 	 * @return the global volume
 	 */
-	public synchronized double getVolume() {
+	public double getVolume() {
 		return this.globalVolume;
 	}
 	
@@ -70,65 +145,385 @@ public class Mixer {
 	 * Set the global volume for this Mixer.
 	 * @param volume the global volume to set
 	 */
-	public synchronized void setVolume(double volume) {
+	public void setVolume(double volume) {
 		if (volume >= 0.0) {
 			this.globalVolume = volume;
 		}
 	}
 	
+	/**
+	 * Get a bus of this Mixer by name.
+	 * @param name the name of the bus
+	 * @return the bus with the given name, null if there is none
+	 */
+	public MixBus getBus(String name) {
+		for (int i = 0; i < this.buses.length; i++) {
+			if (this.buses[i].getName().equals(name)) {
+				return this.buses[i];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the bus of this Mixer that is the given Bus.
+	 * @param bus the Bus
+	 * @return the bus of this Mixer
+	 * @throws IllegalArgumentException if the Bus does not belong to this
+	 * Mixer
+	 */
+	public MixBus getBus(Bus bus) {
+		for (int i = 0; i < this.buses.length; i++) {
+			if (this.buses[i] == bus) {
+				return this.buses[i];
+			}
+		}
+		throw new IllegalArgumentException("Bus does not belong to this Mixer");
+	}
+	
+	/**
+	 * Get the pan law used by this Mixer.
+	 * @return the pan law
+	 */
+	public PanLaw getPanLaw() {
+		return this.panLaw;
+	}
+	
+	/**
+	 * Set the pan law used by this Mixer.
+	 * @param panLaw the pan law to set
+	 */
+	public void setPanLaw(PanLaw panLaw) {
+		if (panLaw != null) {
+			this.panLaw = panLaw;
+		}
+	}
+	
+	/**
+	 * Determine if this Mixer limits its output.
+	 * @return true if the limiter is enabled
+	 */
+	public boolean isLimiterEnabled() {
+		return this.limiterEnabled;
+	}
+	
+	/**
+	 * Set whether this Mixer limits its output.  Enabling the limiter delays
+	 * the output by {@link Limiter#DELAY_FRAMES}, and disabling it lets out
+	 * the audio it is still holding back before any newly mixed audio.
+	 * @param enabled whether the limiter should be enabled
+	 */
+	public void setLimiterEnabled(boolean enabled) {
+		this.limiterEnabled = enabled;
+	}
+	
+	/**
+	 * Get the level the limiter keeps the output under.
+	 * @return the limiter threshold as a fraction of full scale
+	 */
+	public double getLimiterThreshold() {
+		return this.limiterThreshold;
+	}
+	
+	/**
+	 * Set the level the limiter keeps the output under.  Values outside of
+	 * (0.0,1.0] will be ignored.
+	 * @param threshold the limiter threshold as a fraction of full scale
+	 */
+	public void setLimiterThreshold(double threshold) {
+		if (threshold > 0.0 && threshold <= 1.0) {
+			this.limiterThreshold = threshold;
+		}
+	}
+	
+	/**
+	 * Get how long the limiter takes to recover after a peak.
+	 * @return the limiter release time in milliseconds
+	 */
+	public double getLimiterRelease() {
+		return this.limiterRelease;
+	}
+	
+	/**
+	 * Set how long the limiter takes to recover after a peak.  Negative values
+	 * will be ignored.
+	 * @param millis the limiter release time in milliseconds
+	 */
+	public void setLimiterRelease(double millis) {
+		if (millis >= 0.0) {
+			this.limiterRelease = millis;
+		}
+	}
+	
+	/**
+	 * Get the maximum number of SoundReferences this Mixer will mix at once.
+	 * @return the maximum number of SoundReferences
+	 */
+	public int getMaxVoices() {
+		return this.maxVoices;
+	}
+	
+	/**
+	 * Set the maximum number of SoundReferences this Mixer will mix at once.
+	 * MusicReferences are not counted.  Values less than 1 remove the limit.
+	 * @param maxVoices the maximum number of SoundReferences
+	 */
+	public void setMaxVoices(int maxVoices) {
+		this.maxVoices = (maxVoices >= 1) ? maxVoices : Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Get how this Mixer chooses which SoundReference to stop when the
+	 * maximum number are already being mixed.
+	 * @return the stealing policy
+	 */
+	public StealingPolicy getStealingPolicy() {
+		return this.stealingPolicy;
+	}
+	
+	/**
+	 * Set how this Mixer chooses which SoundReference to stop when the
+	 * maximum number are already being mixed.
+	 * @param policy the stealing policy to set
+	 */
+	public void setStealingPolicy(StealingPolicy policy) {
+		if (policy != null) {
+			this.stealingPolicy = policy;
+		}
+	}
+	
 	/**
 	 * Registers a MusicReference with this Mixer.
 	 * @param music MusicReference to be registered
 	 */
-	public synchronized void registerMusicReference(MusicReference music) {
-		this.musics.add(music);
+	public void registerMusicReference(MusicReference music) {
+		this.queueCommand(Command.REGISTER_MUSIC, music, null, 0);
 	}
 	
 	/**
 	 * Registers a SoundReference with this Mixer.
 	 * @param sound SoundReference to be registered
 	 */
-	public synchronized void registerSoundReference(SoundReference sound) {
-	        sound.fireEvent(this.eventHandler, SoundEvent.Action.PLAY);
-		this.sounds.add(sound);
+	public void registerSoundReference(SoundReference sound) {
+		this.queueCommand(Command.REGISTER_SOUND, null, sound, 0);
 	}
 	
 	/**
-	 * Unregisters a MusicReference with this Mixer.
+	 * Unregisters a MusicReference with this Mixer.  The MusicReference is
+	 * disposed of once it has been unregistered.
 	 * @param music MusicReference to be unregistered
 	 */
-	public synchronized void unRegisterMusicReference(MusicReference music) {
-		this.musics.remove(music);
+	public void unRegisterMusicReference(MusicReference music) {
+		this.queueCommand(Command.UNREGISTER_MUSIC, music, null, 0);
 	}
 	
 	/**
 	 * Unregisters all SoundReferences with a given soundID.
 	 * @param soundID ID of SoundReferences to be unregistered
 	 */
-	public synchronized void unRegisterSoundReference(int soundID) {
-		//removal working backward is easier
-		for (int i = this.sounds.size() - 1; i >= 0; i--) {
-			if (this.sounds.get(i).getSoundID() == soundID) {
-				this.sounds.remove(i).dispose();
-			}
-		}
+	public void unRegisterSoundReference(int soundID) {
+		this.queueCommand(Command.UNREGISTER_SOUND, null, null, soundID);
 	}
 	
 	/**
 	 * Unregister all Music registered with this Mixer.
 	 */
-	public synchronized void clearMusic() {
-		this.musics.clear();
+	public void clearMusic() {
+		this.queueCommand(Command.CLEAR_MUSIC, null, null, 0);
 	}
 	
 	/**
 	 * Unregister all Sounds registered with this Mixer.
 	 */
-	public synchronized void clearSounds() {
-		for (SoundReference s : this.sounds) {
-			s.dispose();
+	public void clearSounds() {
+		this.queueCommand(Command.CLEAR_SOUNDS, null, null, 0);
+	}
+	
+	/**
+	 * Set the lock held while reading from this Mixer, for when there is no
+	 * thread reading continuously and reads only happen on demand, such as
+	 * when rendering offline.  Changes that find the queue full then apply it
+	 * themselves while holding the lock, instead of waiting for a read that
+	 * may never come.
+	 * @param readLock the lock held while reading, null if a thread reads
+	 * continuously
+	 */
+	public void setReadLock(Object readLock) {
+		this.readLock = readLock;
+	}
+	
+	/**
+	 * Queue a change to be applied by the reading thread.  If the queue is
+	 * full this waits for the reading thread to catch up.  Changes made after
+	 * this Mixer is shut down are ignored, since nothing will read them.
+	 * @param type the type of change
+	 * @param music the MusicReference the change is for, if any
+	 * @param sound the SoundReference the change is for, if any
+	 * @param soundID the sound ID the change is for, if any
+	 * @throws IllegalStateException if the reading thread hasn't made room
+	 * for the change within a second
+	 */
+	private void queueCommand(int type, MusicReference music,
+			SoundReference sound, int soundID) {
+		if (this.shutdown) {
+			return;
 		}
-		this.sounds.clear();
+		long ticket = this.commands.claim();
+		if (ticket < 0) {
+			ticket = this.waitForCommandRoom();
+		}
+		Command command = this.commands.get(ticket);
+		command.type = type;
+		command.music = music;
+		command.sound = sound;
+		command.soundID = soundID;
+		this.commands.publish(ticket);
+	}
+	
+	/**
+	 * Wait for room in the queue of changes.
+	 * @return the ticket of the claimed slot
+	 * @throws IllegalStateException if the reading thread hasn't made room
+	 * within a second
+	 */
+	private long waitForCommandRoom() {
+		long deadline = System.nanoTime() + Mixer.COMMAND_WAIT_NANOS;
+		long ticket;
+		while ((ticket = this.commands.claim()) < 0) {
+			Object readLock = this.readLock;
+			if (readLock != null) {
+				//nobody reads until asked to, so apply the changes here
+				synchronized (readLock) {
+					this.processCommands();
+				}
+			}
+			else if (System.nanoTime() - deadline > 0) {
+				throw new IllegalStateException("Mixer command queue full," +
+						" audio is not being read");
+			}
+			else {
+				Thread.yield();
+			}
+		}
+		return ticket;
+	}
+	
+	/**
+	 * Apply all queued changes to the registered audio.  This must only be
+	 * called by the thread that reads from this Mixer, or once that thread
+	 * has stopped.
+	 */
+	public void processCommands() {
+		this.metrics.recordCommandQueueDepth(this.commands.size());
+		Command command;
+		while ((command = this.commands.peek()) != null) {
+			switch (command.type) {
+				case Command.REGISTER_MUSIC:
+					this.musics.add(command.music);
+					break;
+				case Command.REGISTER_SOUND:
+					if (this.makeRoomFor(command.sound)) {
+						command.sound.fireEvent(this.eventHandler,
+								SoundEvent.Action.PLAY);
+						this.sounds.add(command.sound);
+					}
+					else { //it lost out to everything already playing
+						command.sound.dispose();
+					}
+					break;
+				case Command.UNREGISTER_MUSIC:
+					if (this.musics.remove(command.music)) {
+						command.music.dispose();
+					}
+					break;
+				case Command.UNREGISTER_SOUND:
+					//removal working backward is easier
+					for (int i = this.sounds.size() - 1; i >= 0; i--) {
+						if (this.sounds.get(i).getSoundID() ==
+								command.soundID) {
+							this.sounds.remove(i).dispose();
+						}
+					}
+					break;
+				case Command.CLEAR_MUSIC:
+					this.musics.clear();
+					break;
+				case Command.CLEAR_SOUNDS:
+					for (SoundReference s : this.sounds) {
+						s.dispose();
+					}
+					this.sounds.clear();
+					break;
+			}
+			//don't hold on to references in the queue
+			command.music = null;
+			command.sound = null;
+			this.commands.release();
+		}
+	}
+	
+	/**
+	 * Stop SoundReferences until there is room to mix another one.
+	 * @param sound the SoundReference that needs room
+	 * @return true if there is room, false if the SoundReference should not
+	 * be played
+	 */
+	private boolean makeRoomFor(SoundReference sound) {
+		int max = this.maxVoices;
+		StealingPolicy policy = this.stealingPolicy;
+		while (this.sounds.size() >= max) {
+			int victim = this.chooseVictim(sound, policy);
+			if (victim < 0) {
+				return false;
+			}
+			SoundReference stolen = this.sounds.remove(victim);
+			stolen.fireEvent(this.eventHandler, SoundEvent.Action.STOP);
+			stolen.dispose();
+		}
+		return true;
+	}
+	
+	/**
+	 * Choose which SoundReference to stop to make room for another.  Sounds
+	 * are kept in the order they started, so the oldest one wins any ties.
+	 * @param sound the SoundReference that needs room
+	 * @param policy the stealing policy to follow
+	 * @return index of the SoundReference to stop, -1 if the new one should
+	 * not be played instead
+	 */
+	private int chooseVictim(SoundReference sound, StealingPolicy policy) {
+		if (this.sounds.isEmpty()) {
+			return -1;
+		}
+		int victim = 0;
+		switch (policy) {
+			case QUIETEST:
+				for (int i = 1; i < this.sounds.size(); i++) {
+					if (this.sounds.get(i).getVolume() <
+							this.sounds.get(victim).getVolume()) {
+						victim = i;
+					}
+				}
+				if (sound.getVolume() < this.sounds.get(victim).getVolume()) {
+					return -1;
+				}
+				break;
+			case LOWEST_PRIORITY:
+				for (int i = 1; i < this.sounds.size(); i++) {
+					if (this.sounds.get(i).getPriority() <
+							this.sounds.get(victim).getPriority()) {
+						victim = i;
+					}
+				}
+				if (sound.getPriority() <
+						this.sounds.get(victim).getPriority()) {
+					return -1;
+				}
+				break;
+			default: //OLDEST
+				break;
+		}
+		return victim;
 	}
 	
 	/**
@@ -138,127 +533,263 @@ public class Mixer {
 	 * @param length the maximum number of bytes that should be read
 	 * @return number of bytes read into buffer
 	 */
-	public synchronized int read(byte[] data, int offset, int length) {
+	public int read(byte[] data, int offset, int length) {
 		//************************************************//
 		//assume little-endian, stereo, 16-bit, signed PCM//
 		//************************************************//
-		int numRead = 0;
-		boolean bytesRead = true; //terminate early if out of bytes
-		for (int i = offset; i < (length + offset) && bytesRead; i += 4) {
-			//first assume we are done
-			bytesRead = false;
-			//need to track value across audio sources
-			double leftValue = 0.0;
-			double rightValue = 0.0;
-			//go through all the music first
-			for (int m = 0; m < this.musics.size(); m++) {
-				MusicReference music = this.musics.get(m);
-				//is the music playing and are there bytes available
-				if (music.getPlaying() && music.bytesAvailable() > 0) {
-					//add this music to the mix by volume (and global volume)
-					music.nextTwoBytes(this.dataBuf, false);
-					double volume = music.getVolume() * this.globalVolume;
-					double leftCurr = (this.dataBuf[0] * volume);
-					double rightCurr = (this.dataBuf[1] * volume);
-					//do panning
-					double pan = music.getPan();
-					if (pan != 0.0) {
-						double ll = (pan <= 0.0) ? 1.0 : (1.0 - pan);
-						double lr = (pan <= 0.0) ? Math.abs(pan) : 0.0;
-						double rl = (pan >= 0.0) ? pan : 0.0;
-						double rr = (pan >= 0.0) ? 1.0 : (1.0 - Math.abs(pan));
-						double tmpL = (ll * leftCurr) + (lr * rightCurr);
-						double tmpR = (rl * leftCurr) + (rr * rightCurr);
-						leftCurr = tmpL;
-						rightCurr = tmpR;
-					}
-					//update the final left and right channels
-					leftValue += leftCurr;
-					rightValue += rightCurr;
-					//we know we aren't done yet now
-					bytesRead = true;
-				}
+		long startTime = System.nanoTime();
+		this.processCommands();
+		int numFrames = length / 4;
+		int maxBlockFrames = this.maxBlockFrames;
+		int framesRead = 0;
+		int framesDrained = 0; //let out of the limiter rather than mixed
+		int numBlocks = 0;
+		//mix in blocks of at most the block size, stopping early once
+		//everything has finished
+		while (framesRead < numFrames) {
+			int blockFrames = Math.min(maxBlockFrames, numFrames - framesRead);
+			int drainFrames = this.limiterDrainFrames(blockFrames);
+			this.blockStartFrame = this.engineFrame + framesRead -
+				framesDrained;
+			int blockRead = this.readBlock(data, offset + (framesRead * 4),
+					blockFrames, drainFrames);
+			framesRead += blockRead;
+			framesDrained += drainFrames;
+			numBlocks++;
+			if (blockRead < blockFrames) {
+				break;
 			}
-			//then go through all the sounds (backwards to remove completed)
-			for (int s = this.sounds.size() - 1; s >= 0; s--) {
-				SoundReference sound = this.sounds.get(s);
-				//are there bytes available
-				if (sound.bytesAvailable() > 0) {
-					//add this sound to the mix by volume (and global volume)
-					sound.nextTwoBytes(this.dataBuf, false);
-					double volume = sound.getVolume() * this.globalVolume;
-					double leftCurr = (this.dataBuf[0] * volume);
-					double rightCurr = (this.dataBuf[1] * volume);
-					//do panning
-					//do panning
-					double pan = sound.getPan();
-					if (pan != 0.0) {
-						double ll = (pan <= 0.0) ? 1.0 : (1.0 - pan);
-						double lr = (pan <= 0.0) ? Math.abs(pan) : 0.0;
-						double rl = (pan >= 0.0) ? pan : 0.0;
-						double rr = (pan >= 0.0) ? 1.0 : (1.0 - Math.abs(pan));
-						double tmpL = (ll * leftCurr) + (lr * rightCurr);
-						double tmpR = (rl * leftCurr) + (rr * rightCurr);
-						leftCurr = tmpL;
-						rightCurr = tmpR;
-					}
-					//update the final left and right channels
-					leftValue += leftCurr;
-					rightValue += rightCurr;
-					//we know we aren't done yet now
-					bytesRead = true;
-					//remove the reference if done
-					if (sound.bytesAvailable() <= 0) {
-					        sound.fireEvent(this.eventHandler, SoundEvent.Action.STOP);
-						this.sounds.remove(s).dispose();
-					}
-				}
-				else { //otherwise remove this reference
-				        sound.fireEvent(this.eventHandler, SoundEvent.Action.STOP);
-					this.sounds.remove(s).dispose();
-				}
+		}
+		this.recordVoices();
+		this.metrics.recordRender(numBlocks, framesRead,
+				System.nanoTime() - startTime);
+		//the reader pads a short read with silence, so the whole request
+		//counts as time passing, apart from audio that was mixed before
+		this.engineFrame += numFrames - framesDrained;
+		return framesRead * 4;
+	}
+	
+	/**
+	 * Get how many frames at the start of the next block are audio the
+	 * limiter is still holding back after being disabled.  If it is enabled
+	 * again before all of that is out, it carries on limiting from where it
+	 * is rather than being reset, so none of it is dropped.  Only the reading
+	 * thread may call this.
+	 * @param numFrames the number of frames in the block
+	 * @return the number of frames to let out of the limiter
+	 */
+	private int limiterDrainFrames(int numFrames) {
+		if (this.limiting && !this.limiterEnabled) {
+			this.limiting = false;
+		}
+		else if (!this.limiting && this.limiterEnabled &&
+				this.limiterDelay > 0) {
+			//the silence let in while draining stays in the delay line, so
+			//the limiter is back to holding back a full delay
+			this.limiting = true;
+			this.limiterSilence += Limiter.DELAY_FRAMES - this.limiterDelay;
+			this.limiterDelay = Limiter.DELAY_FRAMES;
+		}
+		if (this.limiting) {
+			return 0;
+		}
+		return Math.min(this.limiterDelay, numFrames);
+	}
+	
+	/**
+	 * Record how many voices are playing in the metrics.
+	 */
+	private void recordVoices() {
+		int numMusic = 0;
+		for (int m = 0; m < this.musics.size(); m++) {
+			if (this.musics.get(m).getPlaying()) {
+				numMusic++;
 			}
-			//if we actually read bytes, store in the buffer
-			if (bytesRead) {
-				int finalLeftValue = (int)leftValue;
-				int finalRightValue = (int)rightValue;
-				//clipping
-				if (finalLeftValue > Short.MAX_VALUE) {
-					finalLeftValue = Short.MAX_VALUE;
-				}
-				else if (finalLeftValue < Short.MIN_VALUE) {
-					finalLeftValue = Short.MIN_VALUE;
-				}
-				if (finalRightValue > Short.MAX_VALUE) {
-					finalRightValue = Short.MAX_VALUE;
-				}
-				else if (finalRightValue < Short.MIN_VALUE) {
-					finalRightValue = Short.MIN_VALUE;
+		}
+		this.metrics.recordVoices(this.sounds.size(), numMusic);
+	}
+	
+	/**
+	 * Mix a single block of frames into a buffer.
+	 * @param data the buffer to write the frames into
+	 * @param offset the start index to write bytes into
+	 * @param numFrames the maximum number of frames to write
+	 * @param drainFrames the number of frames at the start of the block to
+	 * let out of the limiter instead of mixing
+	 * @return number of frames written into buffer
+	 */
+	private int readBlock(byte[] data, int offset, int numFrames,
+			int drainFrames) {
+		//settings that may change under us are read once for the whole block
+		this.blockFrames = numFrames - drainFrames;
+		this.blockVolume = this.globalVolume;
+		this.blockPanLaw = this.panLaw;
+		int numVoices = this.musics.size() + this.sounds.size();
+		int numTasks = 1;
+		if (numVoices >= this.parallelThreshold) {
+			numTasks = Math.min(this.startPool(), numVoices);
+		}
+		MixTask master = this.tasks[0];
+		//the master bus holds the whole block, drained frames included
+		master.ensureCapacity(numFrames);
+		if (numTasks <= 1) {
+			master.setRange(0, numVoices);
+			master.mix();
+		}
+		else {
+			//hand out even chunks of the voices, this thread mixes the first
+			//one itself while the pool mixes the rest
+			for (int t = 0; t < numTasks; t++) {
+				this.tasks[t].setRange((numVoices * t) / numTasks,
+						(numVoices * (t + 1)) / numTasks);
+			}
+			for (int t = 1; t < numTasks; t++) {
+				this.tasks[t].reinitialize();
+				this.pool.execute(this.tasks[t]);
+			}
+			master.mix();
+			//then reduce every chunk onto the master bus
+			for (int t = 1; t < numTasks; t++) {
+				MixTask task = this.tasks[t];
+				task.join();
+				MixKernel.add(task.busLeft, task.busRight, master.busLeft,
+						master.busRight, task.framesMixed);
+				if (task.framesMixed > master.framesMixed) {
+					master.framesMixed = task.framesMixed;
 				}
-				//left channel bytes
-				data[i + 1] = (byte)((finalLeftValue >> 8) & 0xFF); //MSB
-				data[i] = (byte)(finalLeftValue & 0xFF); //LSB
-				//then right channel bytes
-				data[i + 3] = (byte)((finalRightValue >> 8) & 0xFF); //MSB
-				data[i + 2] = (byte)(finalRightValue & 0xFF); //LSB
-				numRead += 4;
 			}
 		}
-		return numRead;
+		int framesMixed = master.framesMixed;
+		//limit the master bus if needed
+		if (drainFrames > 0) {
+			//the limiter was disabled while holding audio back, so let that
+			//out first rather than dropping it
+			System.arraycopy(master.busLeft, 0, master.busLeft, drainFrames,
+					framesMixed);
+			System.arraycopy(master.busRight, 0, master.busRight, drainFrames,
+					framesMixed);
+			Arrays.fill(master.busLeft, 0, drainFrames, 0.0f);
+			Arrays.fill(master.busRight, 0, drainFrames, 0.0f);
+			this.limiter.process(master.busLeft, master.busRight, drainFrames);
+			this.limiterDelay -= drainFrames;
+			framesMixed += drainFrames;
+		}
+		else if (this.limiterEnabled) {
+			if (!this.limiting) {
+				//nothing is held back, so there is nothing to lose
+				this.limiter.reset();
+				this.limiting = true;
+				//the limiter starts out holding back silence
+				this.limiterDelay = Limiter.DELAY_FRAMES;
+				this.limiterSilence += Limiter.DELAY_FRAMES;
+			}
+			this.limiter.setThreshold(this.limiterThreshold);
+			this.limiter.setRelease(this.limiterRelease);
+			//the limiter delays the audio, so the whole block is used
+			framesMixed = this.blockFrames;
+			this.limiter.process(master.busLeft, master.busRight, framesMixed);
+		}
+		//remove the sounds that are done (backwards to keep indices valid)
+		for (int s = this.sounds.size() - 1; s >= 0; s--) {
+			SoundReference sound = this.sounds.get(s);
+			if (sound.bytesAvailable() <= 0) {
+				sound.fireEvent(this.eventHandler, SoundEvent.Action.STOP);
+				this.sounds.remove(s).dispose();
+			}
+		}
+		//store what we actually read in the buffer
+		MixKernel.toBytes(master.busLeft, master.busRight, data, offset,
+				framesMixed);
+		return framesMixed;
+	}
+	
+	/**
+	 * Start the pool used for parallel mixing if it hasn't been started yet.
+	 * @return the most chunks a block can be split into
+	 */
+	private int startPool() {
+		if (this.pool == null && this.maxTasks > 1) {
+			this.pool = new ForkJoinPool(this.maxTasks);
+			MixTask[] tasks = new MixTask[this.maxTasks];
+			tasks[0] = this.tasks[0];
+			for (int t = 1; t < tasks.length; t++) {
+				tasks[t] = new MixTask();
+			}
+			this.tasks = tasks;
+		}
+		return this.tasks.length;
+	}
+	
+	/**
+	 * Get the most frames this Mixer mixes at once.
+	 * @return the block size in frames
+	 */
+	public int getBlockFrames() {
+		return this.maxBlockFrames;
+	}
+	
+	/**
+	 * Set the most frames this Mixer mixes at once.  Reads longer than this
+	 * are mixed a block at a time.  Values that are not positive will be
+	 * ignored.
+	 * @param blockFrames the block size in frames
+	 */
+	public void setBlockFrames(int blockFrames) {
+		if (blockFrames > 0) {
+			this.maxBlockFrames = blockFrames;
+		}
+	}
+	
+	/**
+	 * Get the number of voices that must be playing before this Mixer mixes
+	 * them in parallel.
+	 * @return the parallel mixing threshold, Integer.MAX_VALUE if disabled
+	 */
+	public int getParallelThreshold() {
+		return this.parallelThreshold;
+	}
+	
+	/**
+	 * Set the number of voices that must be playing before this Mixer mixes
+	 * them in parallel.  Values less than 1 disable parallel mixing.
+	 * @param threshold the parallel mixing threshold to set
+	 */
+	public void setParallelThreshold(int threshold) {
+		this.parallelThreshold = (threshold < 1) ? Integer.MAX_VALUE :
+			threshold;
+	}
+	
+	/**
+	 * Stop the threads used for parallel mixing, if any were started.  This
+	 * Mixer must not be read from while or after this is called.
+	 */
+	public void shutdown() {
+		this.shutdown = true;
+		if (this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+		}
 	}
 	
 	/**
 	 * Skip specified number of bytes of all audio in this Mixer.
 	 * @param numBytes the number of bytes to skip
 	 */
-	public synchronized void skip(int numBytes) {
+	public void skip(int numBytes) {
+		this.processCommands();
+		int numFrames = numBytes / 4;
+		this.metrics.recordSkip(numFrames);
 		//go through all the music first
 		for (int m = 0; m < this.musics.size(); m++) {
 			MusicReference music = this.musics.get(m);
 			//is the music playing and are there bytes available
 			if (music.getPlaying() && music.bytesAvailable() > 0) {
-				//skip the bytes
-				music.skipBytes(numBytes);
+				//skip the bytes since it started, counted per channel
+				int framesPlayed = this.framesPlayed(music.getStartFrame(),
+						numFrames);
+				if (framesPlayed > 0) {
+					music.skipBytes(framesPlayed * 2L);
+				}
 			}
 		}
 		//then go through all the sounds (backwards to remove completed)
@@ -266,11 +797,15 @@ public class Mixer {
 			SoundReference sound = this.sounds.get(s);
 			//are there bytes available
 			if (sound.bytesAvailable() > 0) {
-				//skip the bytes
-				sound.skipBytes(numBytes);
+				//skip the bytes since it started, counted per channel
+				int framesPlayed = this.framesPlayed(sound.getStartFrame(),
+						numFrames);
+				if (framesPlayed > 0) {
+					sound.skipBytes(framesPlayed * 2L);
+				}
 				//remove the reference if done
 				if (sound.bytesAvailable() <= 0) {
-				        sound.fireEvent(this.eventHandler, SoundEvent.Action.STOP);
+					sound.fireEvent(this.eventHandler, SoundEvent.Action.STOP);
 					this.sounds.remove(s).dispose();
 				}
 			}
@@ -278,10 +813,287 @@ public class Mixer {
 				this.sounds.remove(s).dispose();
 			}
 		}
+		this.engineFrame += numFrames;
+	}
+	
+	/**
+	 * Get how many frames of a stretch starting now a voice plays for,
+	 * which is less than all of them if it is scheduled to start partway.
+	 * @param startFrame the engine frame the voice starts on
+	 * @param numFrames the number of frames in the stretch
+	 * @return the number of frames the voice plays, 0 if it starts later
+	 */
+	private int framesPlayed(long startFrame, int numFrames) {
+		long delay = startFrame - this.engineFrame;
+		if (delay <= 0) {
+			return numFrames;
+		}
+		return (delay >= numFrames) ? 0 : numFrames - (int)delay;
+	}
+
+	/**
+	 * Get the engine clock of this Mixer, the number of frames that have been
+	 * read or skipped so far.  It only advances when audio is read or skipped,
+	 * so it runs at real-time rate behind an output line and as fast as the
+	 * reader goes otherwise.  Audio the limiter lets out after being disabled
+	 * was mixed earlier, so reading it doesn't advance the clock.  Only the
+	 * reading thread writes to it, so it can be read from any thread without
+	 * locking.
+	 * @return the number of frames read or skipped so far
+	 */
+	public long getEngineFrame() {
+		return this.engineFrame;
+	}
+	
+	/**
+	 * Get the engine frame of the audio at the end of what has been read from
+	 * this Mixer, which trails the engine clock by whatever the limiter is
+	 * holding back.
+	 * @return the engine frame at the end of the output
+	 */
+	public long getOutputFrame() {
+		return this.engineFrame - this.limiterDelay;
+	}
+	
+	/**
+	 * Get the number of frames the audio read from this Mixer currently trails
+	 * the engine clock by, which is whatever the limiter is holding back.
+	 * @return the number of frames the output is delayed by
+	 */
+	public int getOutputDelay() {
+		return this.limiterDelay;
+	}
+	
+	/**
+	 * Get the number of frames of silence the limiter has put into the output
+	 * so far, one delay's worth each time it was enabled.  Frames read from
+	 * this Mixer are these plus the engine frames of the audio in them.
+	 * @return the number of frames of silence put into the output
+	 */
+	public long getOutputSilence() {
+		return this.limiterSilence;
 	}
 
 	public EventHandler getEventHandler()
 	{
 	    return this.eventHandler;
 	}
+	
+	/**
+	 * Get the live metrics of this Mixer.
+	 * @return the metrics of this Mixer
+	 */
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Get the clock of the output this Mixer is read for.
+	 * @return the output clock of this Mixer
+	 */
+	public AudioClock getClock() {
+		return this.clock;
+	}
+	
+	/**
+	 * The MixTask class mixes a chunk of the voices of a block onto its own
+	 * bus.  MixTasks are reused for every block.
+	 */
+	private class MixTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private int start; //index of the first voice, music before sounds
+		private int end;
+		private int[] voiceLeft; //buffers for reading a block of one voice
+		private int[] voiceRight;
+		private float[] busLeft; //float bus for mixing a block of the chunk
+		private float[] busRight;
+		private int framesMixed;
+		
+		/**
+		 * Construct a new MixTask.
+		 */
+		public MixTask() {
+			this.voiceLeft = new int[0];
+			this.voiceRight = new int[0];
+			this.busLeft = new float[0];
+			this.busRight = new float[0];
+		}
+		
+		/**
+		 * Set the chunk of voices this MixTask mixes.
+		 * @param start index of the first voice
+		 * @param end index after the last voice
+		 */
+		public void setRange(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			this.mix();
+		}
+		
+		/**
+		 * Mix this MixTask's chunk of voices onto its bus.
+		 */
+		public void mix() {
+			int numFrames = Mixer.this.blockFrames;
+			this.ensureCapacity(numFrames);
+			MixKernel.clear(this.busLeft, this.busRight, numFrames);
+			//voices start at the beginning of the block unless scheduled to
+			//start partway, so the mix is done once the voice that reaches
+			//furthest is
+			this.framesMixed = 0;
+			int numMusics = Mixer.this.musics.size();
+			for (int v = this.start; v < this.end; v++) {
+				if (v < numMusics) {
+					MusicReference music = Mixer.this.musics.get(v);
+					MixBus bus = music.getBus();
+					//is the music playing
+					if (!music.getPlaying()) {
+						continue;
+					}
+					int startOffset = this.startOffset(music.getStartFrame(),
+							numFrames);
+					if (startOffset >= numFrames) {
+						continue;
+					}
+					//muted music is only moved along
+					if (bus.isMuted()) {
+						music.skipBytes((numFrames - startOffset) * 2);
+						//still covers the block, so the read carries on
+						this.framesMixed = numFrames;
+						continue;
+					}
+					int framesRead = music.nextFrames(this.voiceLeft,
+							this.voiceRight, startOffset,
+							numFrames - startOffset);
+					//add this music to the mix by volume and pan
+					this.mixVoice(startOffset, framesRead, music.getGain(),
+							music.getVolume(), music.getPan(), bus);
+				}
+				else {
+					SoundReference sound = Mixer.this.sounds.get(v - numMusics);
+					MixBus bus = sound.getBus();
+					int startOffset = this.startOffset(sound.getStartFrame(),
+							numFrames);
+					if (startOffset >= numFrames) {
+						continue;
+					}
+					//muted sounds are only moved along
+					if (bus.isMuted()) {
+						sound.skipBytes((numFrames - startOffset) * 2);
+						//still covers the block, so the read carries on
+						this.framesMixed = numFrames;
+						continue;
+					}
+					int framesRead = sound.nextFrames(this.voiceLeft,
+							this.voiceRight, startOffset,
+							numFrames - startOffset);
+					//add this sound to the mix by volume and pan
+					this.mixVoice(startOffset, framesRead, sound.getGain(),
+							sound.getVolume(), sound.getPan(), bus);
+				}
+			}
+		}
+		
+		/**
+		 * Get the frame of the block a voice starts on.  A voice scheduled
+		 * past this block still keeps the block full, since the mix can't
+		 * stop early while there's more to come.
+		 * @param startFrame the engine frame the voice starts on
+		 * @param numFrames the number of frames in the block
+		 * @return the frame of the block the voice starts on, the number of
+		 * frames in the block if it starts later
+		 */
+		private int startOffset(long startFrame, int numFrames) {
+			long delay = startFrame - Mixer.this.blockStartFrame;
+			if (delay <= 0) {
+				return 0;
+			}
+			if (delay >= numFrames) {
+				this.framesMixed = numFrames;
+				return numFrames;
+			}
+			return (int)delay;
+		}
+		
+		/**
+		 * Add a block of voice data that has been read into the voice buffers
+		 * to the bus.
+		 * @param startOffset the frame of the block the voice data starts on
+		 * @param numFrames the number of frames read into the voice buffers
+		 * @param gain the gain matrix of the voice
+		 * @param volume the volume of the voice
+		 * @param pan the pan of the voice
+		 * @param bus the bus the voice is played on
+		 */
+		private void mixVoice(int startOffset, int numFrames, VoiceGain gain,
+				double volume, double pan, MixBus bus) {
+			if (numFrames <= 0) {
+				return;
+			}
+			//a voice starting partway is silent before it starts
+			if (startOffset > 0) {
+				Arrays.fill(this.voiceLeft, 0, startOffset, 0);
+				Arrays.fill(this.voiceRight, 0, startOffset, 0);
+				numFrames += startOffset;
+			}
+			//the bus is mixed into the master by folding its volume into the
+			//gain matrix, which is only worked out again if a setting changed
+			if (gain.update(volume, pan, Mixer.this.blockVolume *
+					bus.getVolume(), Mixer.this.blockPanLaw)) {
+				//ramp to the new gains over the block so there's no click
+				MixKernel.accumulateRamp(this.voiceLeft, this.voiceRight,
+						this.busLeft, this.busRight, numFrames, gain.startLl,
+						gain.startLr, gain.startRl, gain.startRr, gain.ll,
+						gain.lr, gain.rl, gain.rr);
+			}
+			else {
+				MixKernel.accumulate(this.voiceLeft, this.voiceRight,
+						this.busLeft, this.busRight, numFrames, gain.ll,
+						gain.lr, gain.rl, gain.rr);
+			}
+			if (numFrames > this.framesMixed) {
+				this.framesMixed = numFrames;
+			}
+		}
+		
+		/**
+		 * Make sure the voice and bus buffers can hold a block of frames.
+		 * @param numFrames the number of frames in the block
+		 */
+		private void ensureCapacity(int numFrames) {
+			if (this.busLeft.length < numFrames) {
+				this.voiceLeft = new int[numFrames];
+				this.voiceRight = new int[numFrames];
+				this.busLeft = new float[numFrames];
+				this.busRight = new float[numFrames];
+			}
+		}
+		
+	}
+	
+	/**
+	 * The Command class is a queued change to the audio registered with a
+	 * Mixer.  Commands are reused, so they only live in the queue.
+	 */
+	private static class Command {
+		
+		static final int REGISTER_MUSIC = 0;
+		static final int REGISTER_SOUND = 1;
+		static final int UNREGISTER_MUSIC = 2;
+		static final int UNREGISTER_SOUND = 3;
+		static final int CLEAR_MUSIC = 4;
+		static final int CLEAR_SOUNDS = 5;
+		
+		int type;
+		MusicReference music;
+		SoundReference sound;
+		int soundID;
+		
+	}
 }
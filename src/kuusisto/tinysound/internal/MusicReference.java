@@ -65,6 +65,13 @@ public interface MusicReference {
 	 */
 	public long getEndingLoopPosition();
 	
+	/**
+	 * Get the engine frame this MusicReference starts playing on once it is
+	 * set to play.
+	 * @return the engine frame this MusicReference starts on
+	 */
+	public long getStartFrame();
+	
 	/**
 	 * Get the volume of this MusicReference.
 	 * @return volume of this MusicReference
@@ -77,6 +84,25 @@ public interface MusicReference {
 	 */
 	public double getPan();
 	
+	/**
+	 * Get the gain matrix the Mixer uses for this MusicReference.  It should only
+	 * be touched by the Mixer.
+	 * @return gain matrix of this MusicReference
+	 */
+	public VoiceGain getGain();
+	
+	/**
+	 * Get the bus this MusicReference is played on.
+	 * @return bus of this MusicReference
+	 */
+	public MixBus getBus();
+	
+	/**
+	 * Set the bus this MusicReference is played on.
+	 * @param bus the bus to play this MusicReference on
+	 */
+	public void setBus(MixBus bus);
+	
 	/**
 	 * Set whether this MusicReference is playing.
 	 * @param playing whether this MusicReference is playing
@@ -103,14 +129,23 @@ public interface MusicReference {
 	public void setLoopPositions(long startPosition, long endPosition);
 	
 	/**
-	 * Set the volume of this MusicReference.
+	 * Set the engine frame this MusicReference starts playing on once it is
+	 * set to play.  Frames that have already been mixed mean right away.
+	 * @param frame the engine frame to start on
+	 */
+	public void setStartFrame(long frame);
+	
+	/**
+	 * Set the volume of this MusicReference.  The Mixer ramps to the new
+	 * volume over the next block.
 	 * @param volume the desired volume of this MusicReference
 	 */
 	public void setVolume(double volume);
 	
 	/**
 	 * Set the pan of this MusicReference.  Must be between -1.0 (full pan left)
-	 * and 1.0 (full pan right).
+	 * and 1.0 (full pan right).  The Mixer ramps to the new pan over the next
+	 * block.
 	 * @param pan the desired pan of this MusicReference
 	 */
 	public void setPan(double pan);
@@ -136,11 +171,16 @@ public interface MusicReference {
 	public void skipBytes(long num);
 	
 	/**
-	 * Get the next two bytes from the music data in the specified endianness.
-	 * @param data length-2 array to write in next two bytes from each channel
-	 * @param bigEndian true if the bytes should be read big-endian
+	 * Read the next frames of music data into the given buffers as signed
+	 * 16-bit sample values.  Looping is handled while reading, and reading
+	 * stops early if this MusicReference stops playing.
+	 * @param left buffer to write left channel samples into
+	 * @param right buffer to write right channel samples into
+	 * @param offset index in the buffers at which to start writing
+	 * @param numFrames maximum number of frames to read
+	 * @return number of frames actually read
 	 */
-	public void nextTwoBytes(int[] data, boolean bigEndian);
+	public int nextFrames(int[] left, int[] right, int offset, int numFrames);
 	
 	/**
 	 * Does any cleanup necessary to dispose of resources in use by this
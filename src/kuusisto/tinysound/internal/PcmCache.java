@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The PcmCache class keeps converted audio data in a directory on disk, so
+ * that later runs can map it straight back into memory instead of decoding and
+ * converting the source again.  Each source gets a file named after its URL,
+ * holding a small header followed by the 16-bit samples of each channel in
+ * turn.  The header records a hash of the source, so an entry is only used
+ * while the source is unchanged.  PcmCache is an internal class of the
+ * TinySound system and should be of no real concern to the average user of
+ * TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public class PcmCache {
+
+	private static final int MAGIC = 0x5453504D; //"TSPM"
+	private static final int VERSION = 1;
+	private static final int HASH_SIZE = 32;
+	//magic, version, source hash, channels, bytes per channel
+	private static final int HEADER_SIZE = 4 + 4 + PcmCache.HASH_SIZE + 4 + 8;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File directory;
+
+	/**
+	 * Construct a new PcmCache, creating the directory if needed.
+	 * @param directory the directory to keep audio data in
+	 * @throws IOException if the directory cannot be created
+	 */
+	public PcmCache(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create cache directory " +
+					directory);
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * Get the directory this PcmCache keeps audio data in.
+	 * @return the cache directory
+	 */
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * Read all the bytes of a source, so they can be both hashed and decoded
+	 * without reading it twice.
+	 * @param url the source to read
+	 * @return all the bytes of the source
+	 * @throws IOException if the source cannot be read
+	 */
+	public static byte[] readSource(URL url) throws IOException {
+		InputStream in = url.openStream();
+		try {
+			ByteList list = new ByteList(64 * 1024);
+			byte[] buf = new byte[64 * 1024];
+			int numRead;
+			while ((numRead = in.read(buf)) >= 0) {
+				list.add(buf, 0, numRead);
+			}
+			return list.asArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Load the cached audio data of a source.
+	 * @param url the source of the audio data
+	 * @param hash the hash of the source as it is now
+	 * @return the left and right channels of audio data, the same array for
+	 * mono, or null if there is no up to date entry for the source
+	 */
+	public byte[][] load(URL url, byte[] hash) {
+		File file = this.getFile(url);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.READ);
+			MappedByteBuffer map;
+			try {
+				long fileSize = channel.size();
+				if (fileSize < PcmCache.HEADER_SIZE) {
+					return null;
+				}
+				map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						fileSize);
+			} finally {
+				//the mapping stays valid after the channel is closed
+				channel.close();
+			}
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			if (map.getInt() != PcmCache.MAGIC ||
+					map.getInt() != PcmCache.VERSION) {
+				return null;
+			}
+			byte[] cachedHash = new byte[PcmCache.HASH_SIZE];
+			map.get(cachedHash);
+			if (!Arrays.equals(cachedHash, hash)) {
+				//the source has changed since
+				return null;
+			}
+			int channels = map.getInt();
+			long length = map.getLong();
+			if ((channels != 1 && channels != 2) || length < 0 ||
+					length > Integer.MAX_VALUE ||
+					PcmCache.HEADER_SIZE + length * channels != map.limit()) {
+				return null;
+			}
+			byte[] left = new byte[(int)length];
+			map.get(left);
+			byte[] right = left;
+			if (channels == 2) {
+				right = new byte[(int)length];
+				map.get(right);
+			}
+			return new byte[][] {left, right};
+		} catch (IOException e) {
+			//treat an unreadable entry as missing
+			return null;
+		}
+	}
+
+	/**
+	 * Store the audio data of a source, replacing any existing entry.  This
+	 * is best effort, a failure only means the source is decoded again next
+	 * time.
+	 * @param url the source of the audio data
+	 * @param hash the hash of the source
+	 * @param left left channel of audio data
+	 * @param right right channel of audio data, the same array for mono
+	 */
+	public void store(URL url, byte[] hash, byte[] left, byte[] right) {
+		int channels = (left == right) ? 1 : 2;
+		ByteBuffer header = ByteBuffer.allocate(PcmCache.HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(PcmCache.MAGIC);
+		header.putInt(PcmCache.VERSION);
+		header.put(hash);
+		header.putInt(channels);
+		header.putLong(left.length);
+		header.flip();
+		File file = this.getFile(url);
+		File temp = null;
+		try {
+			//write aside and move into place, so readers never see half an
+			//entry even if another load of the same source is storing too
+			temp = File.createTempFile("tiny", ".tmp", this.directory);
+			FileChannel channel = FileChannel.open(temp.toPath(),
+					StandardOpenOption.WRITE);
+			try {
+				PcmCache.writeFully(channel, header);
+				PcmCache.writeFully(channel, ByteBuffer.wrap(left));
+				if (channels == 2) {
+					PcmCache.writeFully(channel, ByteBuffer.wrap(right));
+				}
+			} finally {
+				channel.close();
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(),
+						StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+		} catch (IOException e) {
+			//not cached, that's all
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Get the file holding the entry for a source.
+	 * @param url the source of the audio data
+	 * @return the file for the source
+	 */
+	private File getFile(URL url) {
+		byte[] name = PcmCache.hash(url.toExternalForm().getBytes(
+				PcmCache.UTF_8));
+		StringBuilder builder = new StringBuilder(name.length * 2 + 4);
+		for (byte b : name) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		builder.append(".pcm");
+		return new File(this.directory, builder.toString());
+	}
+
+	/**
+	 * Write all of a buffer to a channel.
+	 * @param channel the channel to write to
+	 * @param buffer the buffer to write
+	 * @throws IOException if the write fails
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Hash the bytes of a source with SHA-256, to tell whether it has changed.
+	 * @param data all the bytes of the source
+	 * @return the hash of the source
+	 */
+	public static byte[] hash(byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			//every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
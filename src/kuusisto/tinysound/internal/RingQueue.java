@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The RingQueue class is a bounded, lock-free, multiple-producer,
+ * single-consumer queue of preallocated slots.  Producers claim a slot, fill
+ * it in and publish it; the consumer peeks at the oldest published slot, reads
+ * it and releases it for reuse.  Since slots are reused nothing is allocated
+ * after construction.  RingQueue is an internal class of the TinySound system
+ * and should be of no real concern to the average user of TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public class RingQueue<E> {
+
+	/**
+	 * The Factory interface creates the slots of a RingQueue.
+	 */
+	public interface Factory<E> {
+
+		/**
+		 * Create a new slot.
+		 * @return the new slot
+		 */
+		public E create();
+
+	}
+
+	private final Object[] slots;
+	//sequence number of each slot, tells producers and the consumer whose
+	//turn it is to use the slot
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong tail; //next ticket for producers
+	private long head; //next ticket for the consumer, only it touches this
+
+	/**
+	 * Construct a new RingQueue.
+	 * @param capacity the number of slots, rounded up to a power of two
+	 * @param factory creates each of the slots
+	 */
+	public RingQueue(int capacity, Factory<E> factory) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.slots = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.slots[i] = factory.create();
+			this.sequences.set(i, i);
+		}
+		this.mask = size - 1;
+		this.tail = new AtomicLong();
+		this.head = 0;
+	}
+
+	/**
+	 * Get the number of slots in this RingQueue.
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return this.slots.length;
+	}
+
+	/**
+	 * Get the approximate number of slots that have been claimed and not yet
+	 * released.
+	 * @return the approximate number of queued slots
+	 */
+	public int size() {
+		long size = this.tail.get() - this.head;
+		return (size < 0) ? 0 : (int)size;
+	}
+
+	/**
+	 * Claim the next slot for a producer.  The slot must be filled in via
+	 * {@link #get(long)} and then handed to the consumer via
+	 * {@link #publish(long)}.
+	 * @return ticket of the claimed slot, -1 if this RingQueue is full
+	 */
+	public long claim() {
+		while (true) {
+			long ticket = this.tail.get();
+			long sequence = this.sequences.get((int)ticket & this.mask);
+			long diff = sequence - ticket;
+			if (diff == 0) {
+				//slot is free, try to take it
+				if (this.tail.compareAndSet(ticket, ticket + 1)) {
+					return ticket;
+				}
+			}
+			else if (diff < 0) {
+				//the consumer hasn't released this slot yet
+				return -1;
+			}
+			//otherwise another producer beat us to it, try again
+		}
+	}
+
+	/**
+	 * Get the slot for a ticket.
+	 * @param ticket ticket of a claimed slot
+	 * @return the slot
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(long ticket) {
+		return (E)this.slots[(int)ticket & this.mask];
+	}
+
+	/**
+	 * Hand a claimed and filled in slot to the consumer.
+	 * @param ticket ticket of the claimed slot
+	 */
+	public void publish(long ticket) {
+		this.sequences.lazySet((int)ticket & this.mask, ticket + 1);
+	}
+
+	/**
+	 * Get the oldest published slot for the consumer.  The slot must be handed
+	 * back via {@link #release()} once it has been read.
+	 * @return the oldest published slot, null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		int index = (int)this.head & this.mask;
+		if (this.sequences.get(index) != this.head + 1) {
+			return null;
+		}
+		return (E)this.slots[index];
+	}
+
+	/**
+	 * Release the slot last returned by {@link #peek()} for reuse by
+	 * producers.
+	 */
+	public void release() {
+		int index = (int)this.head & this.mask;
+		this.sequences.lazySet(index, this.head + this.slots.length);
+		this.head++;
+	}
+
+}
@@ -55,6 +55,31 @@ public interface SoundReference {
 	 */
 	public double getPan();
 	
+	/**
+	 * Get the gain matrix the Mixer uses for this SoundReference.  It should only
+	 * be touched by the Mixer.
+	 * @return gain matrix of this SoundReference
+	 */
+	public VoiceGain getGain();
+	
+	/**
+	 * Get the bus this SoundReference is played on.
+	 * @return bus of this SoundReference
+	 */
+	public MixBus getBus();
+	
+	/**
+	 * Gets the priority of this SoundReference.
+	 * @return priority of this SoundReference
+	 */
+	public int getPriority();
+	
+	/**
+	 * Get the engine frame this SoundReference starts playing on.
+	 * @return the engine frame this SoundReference starts on
+	 */
+	public long getStartFrame();
+	
 	/**
 	 * Get the number of bytes remaining for each channel.
 	 * @return number of bytes remaining for each channel
@@ -68,11 +93,16 @@ public interface SoundReference {
 	public void skipBytes(long num);
 	
 	/**
-	 * Get the next two bytes from the sound data in the specified endianness.
-	 * @param data length-2 array to write in next two bytes from each channel
-	 * @param bigEndian true if the bytes should be read big-endian
+	 * Read the next frames of sound data into the given buffers as signed
+	 * 16-bit sample values.  Reading stops early if this SoundReference runs
+	 * out of data.
+	 * @param left buffer to write left channel samples into
+	 * @param right buffer to write right channel samples into
+	 * @param offset index in the buffers at which to start writing
+	 * @param numFrames maximum number of frames to read
+	 * @return number of frames actually read
 	 */
-	public void nextTwoBytes(int[] data, boolean bigEndian);
+	public int nextFrames(int[] left, int[] right, int offset, int numFrames);
 	
 	/**
 	 * Does any cleanup necessary to dispose of resources in use by this
@@ -26,7 +26,14 @@
  */
 package kuusisto.tinysound.internal;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class StreamInfo {
 
@@ -38,4 +45,83 @@ public class StreamInfo {
 		this.NUM_BYTES_PER_CHANNEL = numBytesPerChannel;
 	}
 	
+	//bytes mapped at a time, a whole number of frames so none straddle two
+	private static final int WINDOW_SIZE = 1 << 30;
+	
+	/**
+	 * Map the file of interleaved stereo audio data a stream plays from into
+	 * memory.  Reads from the mapping never make a system call, and any number
+	 * of threads can read from it at once by absolute position.  A single
+	 * mapping can't exceed 2GB, so the file is mapped as consecutive windows
+	 * of a fixed size.
+	 * @param url URL of the file containing audio data
+	 * @param numBytesPerChannel the total number of bytes for each channel in
+	 * the file
+	 * @return the audio data as consecutive windows, little-endian
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static ByteBuffer[] map(URL url, long numBytesPerChannel)
+			throws IOException {
+		long size = numBytesPerChannel * 2;
+		File file;
+		try {
+			file = new File(url.toURI());
+		} catch (URISyntaxException e) {
+			throw new IOException("Stream data is not a file: " + url, e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Stream data is not a file: " + url, e);
+		}
+		int numWindows = (int)((size + StreamInfo.WINDOW_SIZE - 1) /
+				StreamInfo.WINDOW_SIZE);
+		ByteBuffer[] windows = new ByteBuffer[numWindows];
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			//the mappings stay valid after the channel is closed
+			for (int i = 0; i < numWindows; i++) {
+				long start = (long)i * StreamInfo.WINDOW_SIZE;
+				long length = Math.min(StreamInfo.WINDOW_SIZE, size - start);
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						length).order(ByteOrder.LITTLE_ENDIAN);
+			}
+			return windows;
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Read frames of mapped audio data into the given buffers as signed 16-bit
+	 * sample values.  The caller must make sure the frames exist.
+	 * @param data the mapped audio data, as returned by map()
+	 * @param position byte index of the first frame in each channel
+	 * @param left buffer to write left channel samples into
+	 * @param right buffer to write right channel samples into
+	 * @param offset index in the buffers at which to start writing
+	 * @param frames number of frames to read
+	 */
+	public static void readFrames(ByteBuffer[] data, long position,
+			int[] left, int[] right, int offset, int frames) {
+		//interleaved, so each channel's position is half the file's
+		long fileIndex = position * 2;
+		int i = offset;
+		int stop = offset + frames;
+		while (i < stop) {
+			ByteBuffer bytes = data[(int)(fileIndex / StreamInfo.WINDOW_SIZE)];
+			int index = (int)(fileIndex % StreamInfo.WINDOW_SIZE);
+			//read up to the end of this window
+			int windowStop = i + (bytes.limit() - index) / 4;
+			if (windowStop > stop) {
+				windowStop = stop;
+			}
+			fileIndex += (long)(windowStop - i) * 4;
+			//little-endian, left then right
+			for (; i < windowStop; i++) {
+				left[i] = bytes.getShort(index);
+				right[i] = bytes.getShort(index + 2);
+				index += 4;
+			}
+		}
+	}
+	
 }
@@ -27,24 +27,26 @@
 package kuusisto.tinysound.internal;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
+import kuusisto.tinysound.Bus;
 import kuusisto.tinysound.Music;
 import kuusisto.tinysound.TinySound;
 import kuusisto.tinysound.event.MusicEvent;
 
 /**
  * The StreamMusic class is an implementation of the Music interface that
- * streams audio data from a temporary file to reduce memory overhead.
+ * streams audio data from a temporary file to reduce memory overhead.  The
+ * file is mapped into memory once and read from the mapping.
  * 
  * @author Finn Kuusisto
  */
 public class StreamMusic implements Music {
 	
-	private URL dataURL;
 	private Mixer mixer;
 	private MusicReference reference;
+	private final MusicEvent[] events; //reused for every event
 	
 	/**
 	 * Construct a new StreamMusic with the given data and the Mixer with which
@@ -53,14 +55,20 @@ public class StreamMusic implements Music {
 	 * @param numBytesPerChannel the total number of bytes for each channel in
 	 * the file
 	 * @param mixer Mixer that will handle this StreamSound
-	 * @throws IOException if a stream cannot be opened from the URL
+	 * @throws IOException if the file cannot be mapped from the URL
 	 */
 	public StreamMusic(URL dataURL, long numBytesPerChannel, Mixer mixer)
 			throws IOException {
-		this.dataURL = dataURL;
 		this.mixer = mixer;
-		this.reference = new StreamMusicReference(this.dataURL, false, false, 0, 0,
-				0, numBytesPerChannel, 1.0, 0.0);
+		//events are immutable, so one per action is all that's needed
+		this.events = new MusicEvent[MusicEvent.Action.values().length];
+		for (MusicEvent.Action action : MusicEvent.Action.values()) {
+			this.events[action.ordinal()] = new MusicEvent(this, action);
+		}
+		this.reference = new StreamMusicReference(
+				StreamInfo.map(dataURL, numBytesPerChannel), false, false, 0, 0,
+				0, numBytesPerChannel, 1.0, 0.0, this.mixer.getBus(Bus.MUSIC),
+				this.mixer.getEventHandler());
 		this.mixer.registerMusicReference(this.reference);
 	}
 
@@ -70,8 +78,7 @@ public class StreamMusic implements Music {
 	 */
 	@Override
 	public void play(boolean loop) {
-		this.reference.setLoop(loop);
-		this.reference.setPlaying(true);
+		this.playAt(0, loop);
 	}
 	
 	/**
@@ -81,9 +88,7 @@ public class StreamMusic implements Music {
 	 */
 	@Override
 	public void play(boolean loop, double volume) {
-		this.setLoop(loop);
-		this.setVolume(volume);
-		this.reference.setPlaying(true);
+		this.playAt(0, loop, volume);
 	}
 	
 	/**
@@ -96,9 +101,53 @@ public class StreamMusic implements Music {
 	 */
 	@Override
 	public void play(boolean loop, double volume, double pan) {
+		this.playAt(0, loop, volume, pan);
+	}
+	
+	/**
+	 * Play this StreamMusic starting exactly on the given engine frame and loop if
+	 * specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this StreamMusic should loop
+	 */
+	@Override
+	public void playAt(long engineFrame, boolean loop) {
+		this.reference.setLoop(loop);
+		this.reference.setStartFrame(engineFrame);
+		this.reference.setPlaying(true);
+	}
+	
+	/**
+	 * Play this StreamMusic starting exactly on the given engine frame at the
+	 * specified volume and loop if specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this StreamMusic should loop
+	 * @param volume the volume to play the this StreamMusic
+	 */
+	@Override
+	public void playAt(long engineFrame, boolean loop, double volume) {
+		this.setLoop(loop);
+		this.setVolume(volume);
+		this.reference.setStartFrame(engineFrame);
+		this.reference.setPlaying(true);
+	}
+	
+	/**
+	 * Play this StreamMusic starting exactly on the given engine frame at the
+	 * specified volume and pan, and loop if specified.
+	 * @param engineFrame the engine frame to start on
+	 * @param loop if this StreamMusic should loop
+	 * @param volume the volume to play the this StreamMusic
+	 * @param pan the pan at which to play this StreamMusic [-1.0,1.0], values
+	 * outside the valid range will be ignored
+	 */
+	@Override
+	public void playAt(long engineFrame, boolean loop, double volume,
+			double pan) {
 		this.setLoop(loop);
 		this.setVolume(volume);
 		this.setPan(pan);
+		this.reference.setStartFrame(engineFrame);
 		this.reference.setPlaying(true);
 	}
 	
@@ -302,17 +351,35 @@ public class StreamMusic implements Music {
 		}
 	}
 
+	/**
+	 * Get the Bus this StreamMusic is played on.
+	 * @return the Bus of this StreamMusic
+	 */
+	@Override
+	public Bus getBus() {
+		return this.reference.getBus();
+	}
+	
+	/**
+	 * Set the Bus this StreamMusic is played on.
+	 * @param bus the Bus to play this StreamMusic on
+	 * @throws IllegalArgumentException if the Bus does not belong to the
+	 * same TinySound system
+	 */
+	@Override
+	public void setBus(Bus bus) {
+		this.reference.setBus(this.mixer.getBus(bus));
+	}
+	
 	/**
 	 * Unload this MemMusic from the system.  Attempts to use this MemMusic
 	 * after unloading will result in error.
 	 */
 	@Override
 	public void unload() {
-		//unregister the reference
+		//unregister the reference (the mixer will dispose of it)
 		this.mixer.unRegisterMusicReference(this.reference);
-		this.reference.dispose();
 		this.mixer = null;
-		this.dataURL = null;
 		this.reference = null;
 	}
 	
@@ -326,23 +393,25 @@ public class StreamMusic implements Music {
 	 */
 	private class StreamMusicReference implements MusicReference {
 		
-		private URL url;
-		private InputStream data;
+		private ByteBuffer[] data; //mapped file, interleaved
 		private long numBytesPerChannel; //not per frame, but the whole sound
-		private byte[] buf;
-		private byte[] skipBuf;
 		private boolean playing;
 		private boolean loop;
 		private long startLoopPosition;
 		private long endLoopPosition;
 		private long position;
-		private double volume;
-		private double pan;
+		//targets the mixer ramps to, so they are only ever read or written
+		private volatile double volume;
+		private volatile double pan;
+		private volatile long startFrame; //engine frame to start on
+		private final EventHandler eventHandler;
+		private final VoiceGain gain;
+		private MixBus bus;
 		
 		/**
 		 * Constructs a new StreamMusicReference with the given audio data and
 		 * settings.
-		 * @param dataURL URL of the temporary file containing audio data
+		 * @param data the mapped audio data, interleaved
 		 * @param playing true if the music should be playing
 		 * @param loop true if the music should loop
 		 * @param loopPosition byte index of the loop position in music data
@@ -351,12 +420,14 @@ public class StreamMusic implements Music {
 		 * in the file
 		 * @param volume volume to play the music
 		 * @param pan pan to play the music
-		 * @throws IOException if a stream cannot be opened from the URL
+		 * @param bus bus on which to play the music
+		 * @param eventHandler event handler to fire music events to
 		 */
-		public StreamMusicReference(URL dataURL, boolean playing, boolean loop,
+		public StreamMusicReference(ByteBuffer[] data, boolean playing, boolean loop,
 				long startLoopPosition, long endLoopPosition, long position,
-				long numBytesPerChannel, double volume, double pan) throws IOException {
-			this.url = dataURL;
+				long numBytesPerChannel, double volume, double pan,
+				MixBus bus, EventHandler eventHandler) {
+			this.data = data;
 			this.playing = playing;
 			this.loop = loop;
 			this.startLoopPosition = startLoopPosition;
@@ -365,10 +436,10 @@ public class StreamMusic implements Music {
 			this.numBytesPerChannel = numBytesPerChannel;
 			this.volume = volume;
 			this.pan = pan;
-			this.buf = new byte[4];
-			this.skipBuf = new byte[50];
-			//now get the data stream
-			this.data = this.url.openStream();
+			this.startFrame = 0;
+			this.eventHandler = eventHandler;
+			this.gain = new VoiceGain();
+			this.bus = bus;
 		}
 
 		/**
@@ -416,12 +487,22 @@ public class StreamMusic implements Music {
 			return this.endLoopPosition;
 		}
 
+		/**
+		 * Get the engine frame this StreamMusicReference starts playing on once it
+		 * is set to play.
+		 * @return the engine frame this StreamMusicReference starts on
+		 */
+		@Override
+		public long getStartFrame() {
+			return this.startFrame;
+		}
+		
 		/**
 		 * Get the volume of this StreamMusicReference.
 		 * @return volume of this StreamMusicReference
 		 */
 		@Override
-		public synchronized double getVolume() {
+		public double getVolume() {
 			return this.volume;
 		}
 
@@ -430,10 +511,37 @@ public class StreamMusic implements Music {
 		 * @return pan of this StreamMusicReference
 		 */
 		@Override
-		public synchronized double getPan() {
+		public double getPan() {
 			return this.pan;
 		}
 
+		/**
+		 * Get the gain matrix the Mixer uses for this StreamMusicReference.
+		 * @return gain matrix of this StreamMusicReference
+		 */
+		@Override
+		public VoiceGain getGain() {
+			return this.gain;
+		}
+		
+		/**
+		 * Get the bus this StreamMusicReference is played on.
+		 * @return bus of this StreamMusicReference
+		 */
+		@Override
+		public synchronized MixBus getBus() {
+			return this.bus;
+		}
+		
+		/**
+		 * Set the bus this StreamMusicReference is played on.
+		 * @param bus the bus to play this StreamMusicReference on
+		 */
+		@Override
+		public synchronized void setBus(MixBus bus) {
+			this.bus = bus;
+		}
+
 		/**
 		 * Set whether this StreamMusicReference is playing.
 		 * @param playing whether this StreamMusicReference is playing
@@ -461,27 +569,8 @@ public class StreamMusic implements Music {
 		@Override
 		public synchronized void setPosition(long position) {
 			if (position >= 0 && position < this.numBytesPerChannel) {
-				//if it's later, skip
-				if (position >= this.position) {
-					this.skipBytes(position - this.position);
-				}
-				else { //otherwise skip from the beginning
-					//first close our current stream
-					try {
-						this.data.close();
-					} catch (IOException e) {
-						//whatever...
-					}
-					//open a new stream
-					try {
-						this.data = this.url.openStream();
-						this.position = 0;
-						this.skipBytes(position);
-					} catch (IOException e) {
-						System.err.println("Failed to open stream for StreamMusic");
-						this.setPlaying(false);
-					}
-				}
+				//reads are by index, so there's nothing to seek
+				this.position = position;
 			}
 		}
 
@@ -505,9 +594,19 @@ public class StreamMusic implements Music {
 		 * @param volume the desired volume of this StreamMusicReference
 		 */
 		@Override
-		public synchronized void setVolume(double volume) {
+		public void setVolume(double volume) {
 			this.volume = volume;
 		}
+		
+		/**
+		 * Set the engine frame this StreamMusicReference starts playing on once it
+		 * is set to play.
+		 * @param frame the engine frame to start on
+		 */
+		@Override
+		public void setStartFrame(long frame) {
+			this.startFrame = frame;
+		}
 
 		/**
 		 * Set the pan of this StreamMusicReference.  Must be between -1.0 (full
@@ -515,7 +614,7 @@ public class StreamMusic implements Music {
 		 * @param pan the desired pan of this StreamMusicReference
 		 */
 		@Override
-		public synchronized void setPan(double pan) {
+		public void setPan(double pan) {
 			this.pan = pan;
 		}
 
@@ -546,114 +645,95 @@ public class StreamMusic implements Music {
 		 */
 		@Override
 		public synchronized void skipBytes(long num) {
-			//couple of shortcuts if we are going to complete the stream
-		    	long nextPosition = this.position + num;
-		    	if (this.loop && nextPosition >= this.endLoopPosition) {
-        		    	this.fireEvent(MusicEvent.Action.LOOP);
-        			//compute the next position
-        			long loopLength = this.numBytesPerChannel - this.startLoopPosition;
-        			long bytesOver = (this.position + num) - this.numBytesPerChannel;
-        			nextPosition = this.startLoopPosition + (bytesOver % loopLength);
-        			//and set us there
-        			this.setPosition(nextPosition);
-        			return;
-		    	}
-		    	else if (nextPosition >= this.numBytesPerChannel) {
-				//if we're not looping, nothing special needs to happen
-				this.position = nextPosition;
-				//now stop since we're out
-				this.setPlaying(false);
+			if (num <= 0) {
 				return;
 			}
-			//this is the number of bytes to skip per channel, so double it
-			long numSkip = num * 2;
-			//spin read since skip is not always supported apparently and won't
-			//guarantee a correct skip amount
-			int tmpRead = 0;
-			int numRead = 0;
-			try {
-				while (numRead < numSkip && tmpRead != -1) {
-					//determine safe length to read
-					long remaining = numSkip - numRead;
-					int len = remaining > this.skipBuf.length ?
-							this.skipBuf.length : (int)remaining;
-					//and read
-					tmpRead = this.data.read(this.skipBuf, 0, len);
-					numRead += tmpRead;
-				}
-			} catch (IOException e) {
-				//hmm... I guess invalidate this reference
-				this.position = this.numBytesPerChannel;
-				this.setPlaying(false);
+			long nextPosition = this.position + num;
+			if (this.loop && nextPosition >= this.endLoopPosition) {
+				//wrapping takes at least one sample, like reading would
+				long toLoopEnd = Math.max(2,
+						this.endLoopPosition - this.position);
+				long loopLength = Math.max(2,
+						this.endLoopPosition - this.startLoopPosition);
+				//go around the loop as many times as it takes in one step
+				long bytesOver = num - toLoopEnd;
+				this.setPosition(this.startLoopPosition +
+						(bytesOver % loopLength));
+				//and report it once, with how many times around it was
+				long loops = 1 + (bytesOver / loopLength);
+				this.fireLoopEvent((int)Math.min(loops, Integer.MAX_VALUE));
 			}
-			//increment the position appropriately
-			if (tmpRead == -1) { //reached end of file in the middle of reading
-				this.position = this.numBytesPerChannel;
+			else if (nextPosition >= this.numBytesPerChannel) {
+				//if we're not looping, nothing special needs to happen
+				this.position = nextPosition;
+				//now stop since we're out
 				this.setPlaying(false);
 			}
 			else {
-				this.position += num;
+				this.position = nextPosition;
 			}
 		}
 
 		/**
-		 * Get the next two bytes from the music data in the specified
-		 * endianness.
-		 * @param data length-2 array to write in next two bytes from each
-		 * channel
-		 * @param bigEndian true if the bytes should be read big-endian
+		 * Read the next frames of music data into the given buffers as signed
+		 * 16-bit sample values.  Looping is handled while reading, and reading
+		 * stops early if this StreamMusicReference stops playing.
+		 * @param left buffer to write left channel samples into
+		 * @param right buffer to write right channel samples into
+		 * @param offset index in the buffers at which to start writing
+		 * @param numFrames maximum number of frames to read
+		 * @return number of frames actually read
 		 */
 		@Override
-		public synchronized void nextTwoBytes(int[] data, boolean bigEndian) {
-			//try to read audio data
-			int tmpRead = 0;
+		public synchronized int nextFrames(int[] left, int[] right,
+				int offset, int numFrames) {
 			int numRead = 0;
-			try {
-				while (numRead < this.buf.length && tmpRead != -1) {
-					tmpRead = this.data.read(this.buf, numRead,
-							this.buf.length - numRead);
-					numRead += tmpRead;
+			while (numRead < numFrames && this.playing &&
+					this.position < this.numBytesPerChannel) {
+				//read up to wherever we need to wrap or stop
+				long end = this.loop ? this.endLoopPosition :
+					this.numBytesPerChannel;
+				if (end > this.numBytesPerChannel) {
+					end = this.numBytesPerChannel;
+				}
+				//always make progress, just like reading frame by frame
+				long frames = (end - this.position) / 2;
+				if (frames < 1) {
+					frames = 1;
+				}
+				if (frames > numFrames - numRead) {
+					frames = numFrames - numRead;
+				}
+				numRead += this.readFrames(left, right, offset + numRead,
+						(int)frames);
+				//wrap if looping
+				if (this.loop && this.position >= this.endLoopPosition) {
+					this.fireEvent(MusicEvent.Action.LOOP);
+					this.setPosition(this.startLoopPosition);
+				}
+				//stop otherwise
+				else if (this.position >= this.numBytesPerChannel) {
+					this.setPlaying(false);
 				}
-			} catch (IOException e) {
-				//this shouldn't happen if the bytes were written correctly to
-				//the temp file, but this sound should now be invalid at least
-				this.position = this.numBytesPerChannel;
-				System.err.println("Failed reading bytes for stream sound");
-			}
-			//copy the values into the caller buffer
-			if (bigEndian) {
-				//left
-				data[0] = ((this.buf[0] << 8) |
-						(this.buf[1] & 0xFF));
-				//right
-				data[1] = ((this.buf[2] << 8) |
-						(this.buf[3] & 0xFF));
-			}
-			else {
-				//left
-				data[0] = ((this.buf[1] << 8) |
-						(this.buf[0] & 0xFF));
-				//right
-				data[1] = ((this.buf[3] << 8) |
-						(this.buf[2] & 0xFF));
-			}
-			//increment the position appropriately
-			if (tmpRead == -1) { //reached end of file in the middle of reading
-				//this should never happen
-				this.position = this.numBytesPerChannel;
-			}
-			else {
-				this.position += 2;
-			}
-			//wrap if looping
-			if (this.loop && this.position >= this.endLoopPosition) {
-        			    this.fireEvent(MusicEvent.Action.LOOP);
-        			    this.setPosition(this.startLoopPosition);
-			}
-			//stop otherwise
-			else if (this.position >= this.numBytesPerChannel) {
-				this.setPlaying(false);
 			}
+			return numRead;
+		}
+		
+		/**
+		 * Read a number of frames from the current position of the mapped
+		 * data into the given buffers.
+		 * @param left buffer to write left channel samples into
+		 * @param right buffer to write right channel samples into
+		 * @param offset index in the buffers at which to start writing
+		 * @param frames number of frames to read
+		 * @return number of frames actually read
+		 */
+		private int readFrames(int[] left, int[] right, int offset,
+				int frames) {
+			StreamInfo.readFrames(this.data, this.position, left, right,
+					offset, frames);
+			this.position += frames * 2;
+			return frames;
 		}
 
 		/**
@@ -664,23 +744,33 @@ public class StreamMusic implements Music {
 		public synchronized void dispose() {
 			this.setPlaying(false);
 			this.position = this.numBytesPerChannel;
-			this.url = null;
-			try {
-				this.data.close();
-			} catch (IOException e) {
-				//whatever... this should never happen
-			}
+			this.data = null;
 		}
 		
 		/**
                  * Create a new music event with {@code action} as action and
-                 * fire to mixer's EventHandler.
+                 * fire to the EventHandler.
                  * @param action event action
                  */
 		private void fireEvent(MusicEvent.Action action)
 		{
-		    MusicEvent event = new MusicEvent(StreamMusic.this, action);
-		    StreamMusic.this.mixer.getEventHandler().fireMusicEvent(event);
+		    MusicEvent event = StreamMusic.this.events[action.ordinal()];
+		    this.eventHandler.fireMusicEvent(event);
+		}
+		
+		/**
+		 * Fire a LOOP event for going around the loop a number of times at
+		 * once.
+		 * @param loops number of times around the loop
+		 */
+		private void fireLoopEvent(int loops) {
+			if (loops == 1) {
+				this.fireEvent(MusicEvent.Action.LOOP);
+			}
+			else {
+				this.eventHandler.fireMusicEvent(new MusicEvent(StreamMusic.this,
+						MusicEvent.Action.LOOP, loops));
+			}
 		}
 	}
 }
\ No newline at end of file
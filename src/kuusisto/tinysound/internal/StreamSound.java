@@ -27,23 +27,27 @@
 package kuusisto.tinysound.internal;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
+import kuusisto.tinysound.Bus;
 import kuusisto.tinysound.Sound;
 import kuusisto.tinysound.event.SoundEvent;
 
 /**
  * Thes StreamSound class is an implementation of the Sound interface that
- * streams audio data from a temporary file to reduce memory overhead.
+ * streams audio data from a temporary file to reduce memory overhead.  The
+ * file is mapped into memory once and every play reads from the mapping.
  * 
  * @author Finn Kuusisto
  */
 public class StreamSound implements Sound {
 	
-	private URL dataURL;
+	private ByteBuffer[] data; //mapped file, shared by every play
 	private long numBytesPerChannel;
 	private Mixer mixer;
+	private MixBus bus; //bus to play on
+	private final SoundEvent[] events; //reused for every play
 	private final int ID;
 	
 	/**
@@ -54,17 +58,20 @@ public class StreamSound implements Sound {
 	 * the file
 	 * @param mixer Mixer that will handle this StreamSound
 	 * @param id unique ID of this StreamSound
-	 * @throws IOException if a stream cannot be opened from the URL
+	 * @throws IOException if the file cannot be mapped from the URL
 	 */
 	public StreamSound(URL dataURL, long numBytesPerChannel, Mixer mixer,
 			int id) throws IOException {
-		this.dataURL = dataURL;
+		this.data = StreamInfo.map(dataURL, numBytesPerChannel);
 		this.numBytesPerChannel = numBytesPerChannel;
 		this.mixer = mixer;
+		this.bus = mixer.getBus(Bus.SFX);
 		this.ID = id;
-		//open and close a stream to check for immediate issues
-		InputStream temp = this.dataURL.openStream();
-		temp.close();
+		//events are immutable, so one per action is all that's needed
+		this.events = new SoundEvent[SoundEvent.Action.values().length];
+		for (SoundEvent.Action action : SoundEvent.Action.values()) {
+			this.events[action.ordinal()] = new SoundEvent(this, action);
+		}
 	}
 
 	/**
@@ -92,17 +99,96 @@ public class StreamSound implements Sound {
 	 */
 	@Override
 	public void play(double volume, double pan) {
+		this.play(volume, pan, 0);
+	}
+	
+	/**
+	 * Plays this StreamSound with a specified volume, pan and priority.
+	 * @param volume the volume at which to play this StreamSound
+	 * @param pan the pan value to play this StreamSound [-1.0,1.0], values
+	 * outside the valid range will assume no panning (0.0)
+	 * @param priority the priority of this play, higher values are more
+	 * important
+	 */
+	@Override
+	public void play(double volume, double pan, int priority) {
+		this.playAt(0, volume, pan, priority);
+	}
+	
+	/**
+	 * Plays this StreamSound starting exactly on the given engine frame.
+	 * @param engineFrame the engine frame to start on
+	 */
+	@Override
+	public void playAt(long engineFrame) {
+		this.playAt(engineFrame, 1.0);
+	}
+	
+	/**
+	 * Plays this StreamSound starting exactly on the given engine frame with a
+	 * specified volume.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this StreamSound
+	 */
+	@Override
+	public void playAt(long engineFrame, double volume) {
+		this.playAt(engineFrame, volume, 0.0);
+	}
+	
+	/**
+	 * Plays this StreamSound starting exactly on the given engine frame with a
+	 * specified volume and pan.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this StreamSound
+	 * @param pan the pan value to play this StreamSound [-1.0,1.0], values
+	 * outside the valid range will assume no panning (0.0)
+	 */
+	@Override
+	public void playAt(long engineFrame, double volume, double pan) {
+		this.playAt(engineFrame, volume, pan, 0);
+	}
+	
+	/**
+	 * Plays this StreamSound starting exactly on the given engine frame with a
+	 * specified volume, pan and priority.
+	 * @param engineFrame the engine frame to start on
+	 * @param volume the volume at which to play this StreamSound
+	 * @param pan the pan value to play this StreamSound [-1.0,1.0], values
+	 * outside the valid range will assume no panning (0.0)
+	 * @param priority the priority of this play, higher values are more
+	 * important
+	 */
+	@Override
+	public void playAt(long engineFrame, double volume, double pan,
+			int priority) {
 		//dispatch a SoundReference to the mixer
-		SoundReference ref;
-		try {
-			ref = new StreamSoundReference(this.dataURL.openStream(),
-					this.numBytesPerChannel, volume, pan, this.ID);
-			this.mixer.registerSoundReference(ref);
-		} catch (IOException e) {
-			System.err.println("Failed to open stream for Sound");
-		}
+		SoundReference ref = new StreamSoundReference(this.data,
+				this.numBytesPerChannel, volume, pan, priority, engineFrame,
+				this.bus, this.ID);
+		this.mixer.registerSoundReference(ref);
 	}
 
+	/**
+	 * Get the Bus this StreamSound is played on.
+	 * @return the Bus of this StreamSound
+	 */
+	@Override
+	public Bus getBus() {
+		return this.bus;
+	}
+	
+	/**
+	 * Set the Bus this StreamSound is played on.  This only affects later plays
+	 * of this StreamSound.
+	 * @param bus the Bus to play this StreamSound on
+	 * @throws IllegalArgumentException if the Bus does not belong to the
+	 * same TinySound system
+	 */
+	@Override
+	public void setBus(Bus bus) {
+		this.bus = this.mixer.getBus(bus);
+	}
+	
 	/**
 	 * Stops this StreamSound from playing.  Note that if this StreamSound was
 	 * played repeatedly in an overlapping fashion, all instances of this
@@ -121,7 +207,7 @@ public class StreamSound implements Sound {
 	public void unload() {
 		this.mixer.unRegisterSoundReference(this.ID);
 		this.mixer = null;
-		this.dataURL = null;
+		this.data = null;
 	}
 	
 	/////////////
@@ -138,32 +224,40 @@ public class StreamSound implements Sound {
 		
 		public final int SOUND_ID;
 		
-		private InputStream data;
+		private ByteBuffer[] data; //shared, so only ever read by index
 		private long numBytesPerChannel; //not per frame, but the whole sound
 		private long position;
 		private double volume;
 		private double pan;
-		private byte[] buf;
-		private byte[] skipBuf;
+		private int priority;
+		private final long startFrame;
+		private final VoiceGain gain;
+		private final MixBus bus;
 		
 		/**
 		 * Construct a new StreamSoundReference with the given reference data.
-		 * @param data the stream of the audio data
+		 * @param data the mapped audio data, interleaved
 		 * @param numBytesPerChannel the total number of bytes for each channel
 		 * in the stream
 		 * @param volume volume at which to play the sound
 		 * @param pan pan at which to play the sound
+		 * @param priority priority at which to play the sound
+		 * @param startFrame engine frame on which to start the sound
+		 * @param bus bus on which to play the sound
 		 * @param soundID ID of the StreamSound for which this is a reference
 		 */
-		public StreamSoundReference(InputStream data, long numBytesPerChannel,
-				double volume, double pan, int soundID) {
+		public StreamSoundReference(ByteBuffer[] data, long numBytesPerChannel,
+				double volume, double pan, int priority, long startFrame,
+				MixBus bus, int soundID) {
 			this.data = data;
 			this.numBytesPerChannel = numBytesPerChannel;
 			this.volume = (volume >= 0.0) ? volume : 1.0;
 			this.pan = (pan >= -1.0 && pan <= 1.0) ? pan : 0.0;
+			this.priority = priority;
+			this.startFrame = startFrame;
+			this.gain = new VoiceGain();
+			this.bus = bus;
 			this.position = 0;
-			this.buf = new byte[4];
-			this.skipBuf = new byte[20];
 			this.SOUND_ID = soundID;
 		}
 
@@ -195,6 +289,42 @@ public class StreamSound implements Sound {
 			return this.pan;
 		}
 
+		/**
+		 * Get the gain matrix the Mixer uses for this StreamSoundReference.
+		 * @return gain matrix of this StreamSoundReference
+		 */
+		@Override
+		public VoiceGain getGain() {
+			return this.gain;
+		}
+		
+		/**
+		 * Get the bus this StreamSoundReference is played on.
+		 * @return bus of this StreamSoundReference
+		 */
+		@Override
+		public MixBus getBus() {
+			return this.bus;
+		}
+		
+		/**
+		 * Gets the priority of this StreamSoundReference.
+		 * @return priority of this StreamSoundReference
+		 */
+		@Override
+		public int getPriority() {
+			return this.priority;
+		}
+		
+		/**
+		 * Get the engine frame this StreamSoundReference starts playing on.
+		 * @return the engine frame this StreamSoundReference starts on
+		 */
+		@Override
+		public long getStartFrame() {
+			return this.startFrame;
+		}
+
 		/**
 		 * Get the number of bytes remaining for each channel.
 		 * @return number of bytes remaining for each channel
@@ -210,34 +340,9 @@ public class StreamSound implements Sound {
 		 */
 		@Override
 		public void skipBytes(long num) {
-			//terminate early if it would finish the sound
+			//no need to read anything to move along the mapping
 			if (this.position + num >= this.numBytesPerChannel) {
 				this.position = this.numBytesPerChannel;
-				return;
-			}
-			//this is the number of bytes to skip per channel, so double it
-			long numSkip = num * 2;
-			//spin read since skip is not always supported apparently and won't
-			//guarantee a correct skip amount
-			int tmpRead = 0;
-			long numRead = 0;
-			try {
-				while (numRead < numSkip && tmpRead != -1) {
-					//determine safe length to read
-					long remaining = numSkip - numRead;
-					int len = remaining > this.skipBuf.length ?
-							this.skipBuf.length : (int)remaining;
-					//and read
-					tmpRead = this.data.read(this.skipBuf, 0, len);
-					numRead += tmpRead;
-				}
-			} catch (IOException e) {
-				//hmm... I guess invalidate this reference
-				this.position = this.numBytesPerChannel;
-			}
-			//increment the position appropriately
-			if (tmpRead == -1) { //reached end of file in the middle of reading
-				this.position = this.numBytesPerChannel;
 			}
 			else {
 				this.position += num;
@@ -245,53 +350,28 @@ public class StreamSound implements Sound {
 		}
 		
 		/**
-		 * Get the next two bytes from the sound data in the specified
-		 * endianness.
-		 * @param data length-2 array to write in next two bytes from each
-		 * channel
-		 * @param bigEndian true if the bytes should be read big-endian
+		 * Read the next frames of sound data into the given buffers as signed
+		 * 16-bit sample values.  Reading stops early if this
+		 * StreamSoundReference runs out of data.
+		 * @param left buffer to write left channel samples into
+		 * @param right buffer to write right channel samples into
+		 * @param offset index in the buffers at which to start writing
+		 * @param numFrames maximum number of frames to read
+		 * @return number of frames actually read
 		 */
 		@Override
-		public void nextTwoBytes(int[] data, boolean bigEndian) {
-			//try to read audio data
-			int tmpRead = 0;
-			int numRead = 0;
-			try {
-				while (numRead < this.buf.length && tmpRead != -1) {
-					tmpRead = this.data.read(this.buf, numRead,
-							this.buf.length - numRead);
-					numRead += tmpRead;
-				}
-			} catch (IOException e) {
-				//this shouldn't happen if the bytes were written correctly to
-				//the temp file, but this sound should now be invalid at least
-				this.position = this.numBytesPerChannel;
-				System.err.println("Failed reading bytes for stream sound");
-			}
-			//copy the values into the caller buffer
-			if (bigEndian) {
-				//left
-				data[0] = ((this.buf[0] << 8) |
-						(this.buf[1] & 0xFF));
-				//right
-				data[1] = ((this.buf[2] << 8) |
-						(this.buf[3] & 0xFF));
-			}
-			else {
-				//left
-				data[0] = ((this.buf[1] << 8) |
-						(this.buf[0] & 0xFF));
-				//right
-				data[1] = ((this.buf[3] << 8) |
-						(this.buf[2] & 0xFF));
-			}
-			//increment the position appropriately
-			if (tmpRead == -1) { //reached end of file in the middle of reading
-				this.position = this.numBytesPerChannel;
-			}
-			else {
-				this.position += 2;
+		public int nextFrames(int[] left, int[] right, int offset,
+				int numFrames) {
+			//never read past the end of the sound data
+			long available = (this.numBytesPerChannel - this.position) / 2;
+			int frames = (numFrames < available) ? numFrames : (int)available;
+			if (frames <= 0) {
+				return 0;
 			}
+			StreamInfo.readFrames(this.data, this.position, left, right,
+					offset, frames);
+			this.position += frames * 2;
+			return frames;
 		}
 
 		/**
@@ -301,19 +381,13 @@ public class StreamSound implements Sound {
 		@Override
 		public void dispose() {
 			this.position = this.numBytesPerChannel;
-			try {
-				this.data.close();
-			} catch (IOException e) {
-				//whatever... this shouldn't happen
-			}
-			this.buf = null;
-			this.skipBuf = null;
+			this.data = null;
 		}
 		
 		@Override
 		public void fireEvent(EventHandler handler, SoundEvent.Action action)
                 {
-                    SoundEvent event = new SoundEvent(StreamSound.this, action);
+                    SoundEvent event = StreamSound.this.events[action.ordinal()];
                     handler.fireSoundEvent(event);
                 }
 
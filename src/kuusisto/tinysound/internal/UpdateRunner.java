@@ -25,11 +25,14 @@
  * POSSIBILITY OF SUCH DAMAGE.
  */
 package kuusisto.tinysound.internal;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
-import javax.sound.sampled.SourceDataLine;
-
+import kuusisto.tinysound.Configuration;
 import kuusisto.tinysound.TinySound;
+import kuusisto.tinysound.UpdateMode;
+import kuusisto.tinysound.output.AudioSink;
 
 /**
  * The UpdateRunner class implements Runnable and is what performs automatic
@@ -41,19 +44,38 @@ import kuusisto.tinysound.TinySound;
  */
 public class UpdateRunner implements Runnable {
 		
+		//how long the render-ahead threads wait when there's nothing to do
+		private static final long RENDER_WAIT_NANOS = 1000000L;
+		private static final long WRITER_WAIT_NANOS = 250000L;
+		
 		private AtomicBoolean running;
-		private SourceDataLine outLine;
+		private AudioSink sink;
 		private Mixer mixer;
+		private UpdateMode mode;
+		private int latencyFrames;
+		private int blockFrames;
+		private ByteRing renderAhead; //only used when rendering ahead
 		
 		/**
 		 * Constructs a new UpdateRunner to update the TinySound system.
 		 * @param mixer the mixer to read audio data from
-		 * @param outLine the line to write audio data to
+		 * @param sink the sink to write audio data to
+		 * @param config the settings to update with
 		 */
-		public UpdateRunner(Mixer mixer, SourceDataLine outLine) {
+		public UpdateRunner(Mixer mixer, AudioSink sink,
+				Configuration config) {
 			this.running = new AtomicBoolean();
 			this.mixer = mixer;
-			this.outLine = outLine;
+			this.sink = sink;
+			this.mode = config.getUpdateMode();
+			this.latencyFrames = config.getLatencyFrames();
+			this.blockFrames = config.getBlockFrames();
+			if (this.mode == UpdateMode.RENDER_AHEAD) {
+				//room for the latency plus the block being added to it
+				int frameSize = TinySound.FORMAT.getFrameSize();
+				this.renderAhead = new ByteRing((Math.max(this.latencyFrames,
+						this.blockFrames) + this.blockFrames) * frameSize);
+			}
 		}
 		
 		/**
@@ -67,16 +89,31 @@ public class UpdateRunner implements Runnable {
 		public void run() {
 			//mark the updater as running
 			this.running.set(true);
-			//1-sec buffer
-			int bufSize = (int)TinySound.FORMAT.getFrameRate() *
-				TinySound.FORMAT.getFrameSize();
-			byte[] audioBuffer = new byte[bufSize];
-			//only buffer some maximum number of frames each update (25ms)
-			int maxFramesPerUpdate = 
-				(int)((TinySound.FORMAT.getFrameRate() / 1000) * 25);
+			if (this.mode == UpdateMode.PULL) {
+				this.runPull();
+			}
+			else if (this.mode == UpdateMode.RENDER_AHEAD) {
+				this.runRenderAhead();
+			}
+			else {
+				this.runTimed();
+			}
+		}
+		
+		/**
+		 * Update every millisecond by however much audio has played since the
+		 * last update, skipping ahead if too much has.
+		 */
+		private void runTimed() {
+			//only buffer some maximum number of frames each update (the
+			//latency), skipping the rest
+			int maxFramesPerUpdate = this.latencyFrames;
+			byte[] audioBuffer = new byte[maxFramesPerUpdate *
+				TinySound.FORMAT.getFrameSize()];
 			int numBytesRead = 0;
 			double framesAccrued = 0;
 			long lastUpdate = System.nanoTime();
+			boolean wroteOnce = false;
 			//keep running until told to stop
 			while (this.running.get()) {
 				//check the time
@@ -116,10 +153,19 @@ public class UpdateRunner implements Runnable {
 				}
 				//mark frames read and skipped
 				framesAccrued -= (framesToRead + framesToSkip);
-				//write to speakers
+				//write to the sink
 				if (numBytesRead > 0) {
-					this.outLine.write(audioBuffer, 0, numBytesRead);
+					//an empty sink means it ran out before we got here
+					if (wroteOnce && this.sink.available() >=
+							this.sink.getBufferSize()) {
+						this.mixer.getMetrics().recordUnderrun();
+					}
+					int numBytesWritten = this.sink.write(audioBuffer, 0,
+							numBytesRead);
+					this.recordWrite(numBytesWritten,
+							this.mixer.getOutputFrame());
 					numBytesRead = 0;
+					wroteOnce = true;
 				}
 				//mark last update
 				lastUpdate = currTime;
@@ -130,4 +176,146 @@ public class UpdateRunner implements Runnable {
 			}
 		}
 		
-	}
\ No newline at end of file
+		/**
+		 * Update whenever the sink has room for more audio, rendering as much
+		 * as it has room for and then blocking in the write to the sink until
+		 * it needs more.
+		 */
+		private void runPull() {
+			int frameSize = TinySound.FORMAT.getFrameSize();
+			//render at least a block at a time so that a full sink blocks us
+			//in the write rather than spinning
+			int minBytesPerUpdate = this.blockFrames * frameSize;
+			//never need more than the whole sink buffer
+			int sinkBytes = this.sink.getBufferSize();
+			sinkBytes -= sinkBytes % frameSize;
+			byte[] audioBuffer = new byte[Math.max(minBytesPerUpdate,
+					sinkBytes)];
+			boolean wroteOnce = false;
+			//keep running until told to stop
+			while (this.running.get()) {
+				//size the update by how much the sink needs
+				int bytesToRead = this.sink.available();
+				//an empty sink means it ran out before we got here
+				if (wroteOnce && bytesToRead >= this.sink.getBufferSize()) {
+					this.mixer.getMetrics().recordUnderrun();
+				}
+				bytesToRead -= bytesToRead % frameSize;
+				if (bytesToRead < minBytesPerUpdate) {
+					bytesToRead = minBytesPerUpdate;
+				}
+				else if (bytesToRead > audioBuffer.length) {
+					bytesToRead = audioBuffer.length;
+				}
+				//read from the mixer and fill the rest with zeroes
+				int numBytesRead = this.mixer.read(audioBuffer, 0,
+						bytesToRead);
+				Arrays.fill(audioBuffer, numBytesRead, bytesToRead, (byte)0);
+				//blocks until the sink has room, which paces this loop
+				int numBytesWritten = this.sink.write(audioBuffer, 0,
+						bytesToRead);
+				this.recordWrite(numBytesWritten, this.mixer.getOutputFrame());
+				wroteOnce = true;
+			}
+		}
+		
+		/**
+		 * Record a write to the sink on the audio clock.
+		 * @param numBytes the number of bytes written
+		 * @param engineFrame the engine frame just after the last frame
+		 * written
+		 */
+		private void recordWrite(int numBytes, long engineFrame) {
+			this.mixer.getClock().recordWrite(numBytes /
+					TinySound.FORMAT.getFrameSize(), engineFrame,
+					this.sink.getLongFramePosition());
+		}
+		
+		/**
+		 * Keep the render-ahead buffer topped up to the latency a block at a
+		 * time, while a separate writer thread drains it to the sink.  Only
+		 * the writer waits on the sink, so a slow write doesn't hold up mixing
+		 * and a slow mix is absorbed by what's already been rendered.
+		 */
+		private void runRenderAhead() {
+			int frameSize = TinySound.FORMAT.getFrameSize();
+			int blockBytes = this.blockFrames * frameSize;
+			int aheadBytes = Math.max(this.latencyFrames, this.blockFrames) *
+				frameSize;
+			byte[] audioBuffer = new byte[blockBytes];
+			//the writer feeds the sink, so it gets the high priority
+			Thread writer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					UpdateRunner.this.runWriter();
+				}
+			});
+			try {
+				writer.setDaemon(true);
+				writer.setPriority(Thread.MAX_PRIORITY);
+				Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
+			} catch (SecurityException e) {}
+			writer.start();
+			//keep running until told to stop
+			while (this.running.get()) {
+				if (this.renderAhead.available() < aheadBytes) {
+					//read from the mixer and fill the rest with zeroes
+					int numBytesRead = this.mixer.read(audioBuffer, 0,
+							blockBytes);
+					Arrays.fill(audioBuffer, numBytesRead, blockBytes,
+							(byte)0);
+					//always fits, the buffer has room for a block past the
+					//latency
+					this.renderAhead.write(audioBuffer, 0, blockBytes);
+				}
+				else {
+					//far enough ahead, wait for the writer to use some
+					LockSupport.parkNanos(UpdateRunner.RENDER_WAIT_NANOS);
+				}
+			}
+			//make sure nobody is using the sink after we return
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		/**
+		 * Drain the render-ahead buffer to the sink a block at a time,
+		 * blocking in the write to the sink until it needs more.
+		 */
+		private void runWriter() {
+			int frameSize = TinySound.FORMAT.getFrameSize();
+			byte[] audioBuffer = new byte[this.blockFrames * frameSize];
+			//nothing is skipped when rendering ahead, so the engine frame at
+			//the end of what's been written is how much has been written,
+			//less any silence the limiter put in
+			long framesWritten = 0;
+			boolean wroteOnce = false;
+			//keep running until told to stop
+			while (this.running.get()) {
+				int numBytes = Math.min(this.renderAhead.available(),
+						audioBuffer.length);
+				numBytes -= numBytes % frameSize;
+				if (numBytes <= 0) {
+					//the mixing fell behind, give it a chance to catch up
+					LockSupport.parkNanos(UpdateRunner.WRITER_WAIT_NANOS);
+					continue;
+				}
+				this.renderAhead.read(audioBuffer, 0, numBytes);
+				//an empty sink means it ran out before we got here
+				if (wroteOnce && this.sink.available() >=
+						this.sink.getBufferSize()) {
+					this.mixer.getMetrics().recordUnderrun();
+				}
+				//blocks until the sink has room, which paces this loop
+				int numBytesWritten = this.sink.write(audioBuffer, 0, numBytes);
+				framesWritten += numBytesWritten / frameSize;
+				this.recordWrite(numBytesWritten, framesWritten -
+						this.mixer.getOutputSilence());
+				wroteOnce = true;
+			}
+		}
+		
+	}
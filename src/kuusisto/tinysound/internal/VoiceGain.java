@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import kuusisto.tinysound.PanLaw;
+
+/**
+ * The VoiceGain class is the 2x2 gain matrix a voice is mixed through.  It is
+ * only worked out again when one of the settings it depends on changes, rather
+ * than for every block.  When it does change, the voice is ramped linearly
+ * from the old gains to the new ones over the block to avoid clicks.
+ * VoiceGain is an internal class of the TinySound
+ * system and should be of no real concern to the average user of TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public class VoiceGain {
+
+	//quarter sine wave for the constant-power pan law
+	private static final int PAN_TABLE_SIZE = 1024;
+	private static final float[] PAN_TABLE = VoiceGain.buildPanTable();
+
+	/**
+	 * Gain from voice left to mix left at the start of the block.
+	 */
+	public float startLl;
+	/**
+	 * Gain from voice right to mix left at the start of the block.
+	 */
+	public float startLr;
+	/**
+	 * Gain from voice left to mix right at the start of the block.
+	 */
+	public float startRl;
+	/**
+	 * Gain from voice right to mix right at the start of the block.
+	 */
+	public float startRr;
+	/**
+	 * Gain from voice left to mix left.
+	 */
+	public float ll;
+	/**
+	 * Gain from voice right to mix left.
+	 */
+	public float lr;
+	/**
+	 * Gain from voice left to mix right.
+	 */
+	public float rl;
+	/**
+	 * Gain from voice right to mix right.
+	 */
+	public float rr;
+
+	//the settings the current gains were worked out for
+	private double volume;
+	private double pan;
+	private double globalVolume;
+	private PanLaw panLaw;
+
+	/**
+	 * Construct a new VoiceGain.  The gains are all zero until the first
+	 * update.
+	 */
+	public VoiceGain() {
+		this.volume = Double.NaN;
+	}
+
+	/**
+	 * Make sure the gains match the given settings for the next block,
+	 * working them out again only if the settings have changed since the last
+	 * update.  If they have, the start gains are left at the old gains so the
+	 * block can be ramped.
+	 * @param volume the volume of the voice
+	 * @param pan the pan of the voice
+	 * @param globalVolume the global volume of the mix
+	 * @param panLaw how pan is turned into gains
+	 * @return true if the block should be ramped from the start gains
+	 */
+	public boolean update(double volume, double pan, double globalVolume,
+			PanLaw panLaw) {
+		//the last block ended at the current gains
+		this.startLl = this.ll;
+		this.startLr = this.lr;
+		this.startRl = this.rl;
+		this.startRr = this.rr;
+		if (volume == this.volume && pan == this.pan &&
+				globalVolume == this.globalVolume && panLaw == this.panLaw) {
+			return false;
+		}
+		//a new voice starts at its gains rather than ramping up from nothing
+		boolean first = Double.isNaN(this.volume);
+		this.volume = volume;
+		this.pan = pan;
+		this.globalVolume = globalVolume;
+		this.panLaw = panLaw;
+		double ll, lr, rl, rr;
+		if (panLaw == PanLaw.CONSTANT_POWER) {
+			//the channel panned away from fades out on a cosine curve while
+			//it fades into the other channel on a sine curve
+			double away = VoiceGain.sin(Math.abs(pan));
+			double stay = VoiceGain.sin(1.0 - Math.abs(pan));
+			ll = (pan <= 0.0) ? 1.0 : stay;
+			lr = (pan <= 0.0) ? away : 0.0;
+			rl = (pan >= 0.0) ? away : 0.0;
+			rr = (pan >= 0.0) ? 1.0 : stay;
+		}
+		else {
+			ll = (pan <= 0.0) ? 1.0 : (1.0 - pan);
+			lr = (pan <= 0.0) ? Math.abs(pan) : 0.0;
+			rl = (pan >= 0.0) ? pan : 0.0;
+			rr = (pan >= 0.0) ? 1.0 : (1.0 - Math.abs(pan));
+		}
+		double gain = volume * globalVolume;
+		this.ll = (float)(ll * gain);
+		this.lr = (float)(lr * gain);
+		this.rl = (float)(rl * gain);
+		this.rr = (float)(rr * gain);
+		return !first;
+	}
+
+	/**
+	 * Look up sin(x * PI/2) for x in [0.0,1.0].
+	 * @param x fraction of a quarter turn
+	 * @return the interpolated sine
+	 */
+	private static double sin(double x) {
+		double pos = x * VoiceGain.PAN_TABLE_SIZE;
+		int i = (int)pos;
+		if (i >= VoiceGain.PAN_TABLE_SIZE) {
+			return VoiceGain.PAN_TABLE[VoiceGain.PAN_TABLE_SIZE];
+		}
+		double frac = pos - i;
+		return VoiceGain.PAN_TABLE[i] +
+			((VoiceGain.PAN_TABLE[i + 1] - VoiceGain.PAN_TABLE[i]) * frac);
+	}
+
+	/**
+	 * Build the quarter sine wave table for the constant-power pan law.
+	 * @return the table
+	 */
+	private static float[] buildPanTable() {
+		float[] table = new float[VoiceGain.PAN_TABLE_SIZE + 1];
+		for (int i = 0; i <= VoiceGain.PAN_TABLE_SIZE; i++) {
+			table[i] = (float)Math.sin((Math.PI / 2) * i /
+					VoiceGain.PAN_TABLE_SIZE);
+		}
+		return table;
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The WavWriter class writes PCM audio data to a WAV file.  The header is
+ * written up front with an empty data chunk and filled in with the real sizes
+ * when the WavWriter is closed, so the length doesn't need to be known ahead of
+ * time.  WavWriter is an internal class of the TinySound system and should be
+ * of no real concern to the average user of TinySound.
+ *
+ * @author Finn Kuusisto
+ */
+public class WavWriter implements Closeable {
+
+	private static final int HEADER_SIZE = 44;
+	//most data a RIFF chunk can declare
+	private static final long MAX_DATA_SIZE = 0xFFFFFFFFL - (HEADER_SIZE - 8);
+
+	private final RandomAccessFile file;
+	private final AudioFormat format;
+	private long dataSize;
+
+	/**
+	 * Construct a new WavWriter, replacing any existing file.
+	 * @param file the file to write to
+	 * @param format the format of the PCM data that will be written, must be
+	 * signed little-endian PCM
+	 * @throws IOException if the file cannot be opened for writing
+	 */
+	public WavWriter(File file, AudioFormat format) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		this.format = format;
+		this.dataSize = 0;
+		try {
+			this.file.setLength(0);
+			this.writeHeader();
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Append PCM data to the data chunk.
+	 * @param data the buffer holding the PCM data
+	 * @param offset the start index of the PCM data
+	 * @param length the number of bytes to write
+	 * @throws IOException if the data cannot be written
+	 */
+	public void write(byte[] data, int offset, int length) throws IOException {
+		this.file.write(data, offset, length);
+		this.dataSize += length;
+	}
+
+	/**
+	 * Get the number of bytes of PCM data written so far.
+	 * @return the number of bytes of PCM data written
+	 */
+	public long getDataSize() {
+		return this.dataSize;
+	}
+
+	/**
+	 * Fill in the header with the final sizes and close the file.
+	 * @throws IOException if the header cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.file.seek(0);
+			this.writeHeader();
+		} finally {
+			this.file.close();
+		}
+	}
+
+	/**
+	 * Write the RIFF, fmt and data chunk headers at the current file position.
+	 * @throws IOException if the header cannot be written
+	 */
+	private void writeHeader() throws IOException {
+		int channels = this.format.getChannels();
+		int sampleRate = (int)this.format.getSampleRate();
+		int bitsPerSample = this.format.getSampleSizeInBits();
+		int frameSize = this.format.getFrameSize();
+		//sizes past what the header can hold are clamped, most readers cope
+		long dataSize = Math.min(this.dataSize, WavWriter.MAX_DATA_SIZE);
+		ByteBuffer header = ByteBuffer.allocate(WavWriter.HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		//RIFF chunk
+		header.put((byte)'R').put((byte)'I').put((byte)'F').put((byte)'F');
+		header.putInt((int)(dataSize + WavWriter.HEADER_SIZE - 8));
+		header.put((byte)'W').put((byte)'A').put((byte)'V').put((byte)'E');
+		//fmt chunk
+		header.put((byte)'f').put((byte)'m').put((byte)'t').put((byte)' ');
+		header.putInt(16);
+		header.putShort((short)1); //PCM
+		header.putShort((short)channels);
+		header.putInt(sampleRate);
+		header.putInt(sampleRate * frameSize); //byte rate
+		header.putShort((short)frameSize); //block align
+		header.putShort((short)bitsPerSample);
+		//data chunk
+		header.put((byte)'d').put((byte)'a').put((byte)'t').put((byte)'a');
+		header.putInt((int)dataSize);
+		this.file.write(header.array());
+	}
+
+}
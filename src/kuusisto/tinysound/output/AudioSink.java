@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.output;
+
+/**
+ * The AudioSink interface is an abstraction for where TinySound's mixed audio
+ * goes.  The update thread writes little-endian, stereo, 16-bit, 44.1kHz PCM
+ * (<code>TinySound.FORMAT</code>) to the AudioSink it was initialized with,
+ * which is expected to consume it at real-time rate the way a line to the
+ * speakers does.  An AudioSink is started when TinySound is initialized and
+ * stopped, flushed and closed when TinySound is shutdown.
+ *
+ * @author Finn Kuusisto
+ */
+public interface AudioSink {
+
+	/**
+	 * Start consuming audio data.
+	 */
+	public void start();
+
+	/**
+	 * Stop consuming audio data.  Data already written is kept until this
+	 * AudioSink is flushed or started again.
+	 */
+	public void stop();
+
+	/**
+	 * Throw away any audio data that has been written but not yet consumed.
+	 */
+	public void flush();
+
+	/**
+	 * Release any resources held by this AudioSink.  It cannot be used again.
+	 */
+	public void close();
+
+	/**
+	 * Write audio data, blocking until all of it has been buffered.  If this
+	 * AudioSink is stopped or closed while the write is blocked, the write
+	 * returns early.
+	 * @param data the buffer holding the audio data
+	 * @param offset the start index of the audio data
+	 * @param length the number of bytes to write, a whole number of frames
+	 * @return the number of bytes written, less than the length if the write
+	 * returned early
+	 */
+	public int write(byte[] data, int offset, int length);
+
+	/**
+	 * Get the number of bytes that can be written without blocking.
+	 * @return the number of bytes that can be written without blocking
+	 */
+	public int available();
+
+	/**
+	 * Get the number of bytes this AudioSink buffers ahead of what it has
+	 * consumed.
+	 * @return the size of the buffer in bytes
+	 */
+	public int getBufferSize();
+
+	/**
+	 * Get the number of frames this AudioSink has consumed since it was
+	 * opened.
+	 * @return the number of frames consumed
+	 */
+	public long getLongFramePosition();
+
+}
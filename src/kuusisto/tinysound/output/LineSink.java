@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.output;
+
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * The LineSink class is an AudioSink that plays audio through a Java Sound
+ * SourceDataLine, which is how TinySound normally reaches the speakers.
+ *
+ * @author Finn Kuusisto
+ */
+public class LineSink implements AudioSink {
+
+	private final SourceDataLine line;
+
+	/**
+	 * Construct a new LineSink.
+	 * @param line the line to play through, already opened with
+	 * <code>TinySound.FORMAT</code>
+	 */
+	public LineSink(SourceDataLine line) {
+		this.line = line;
+	}
+
+	/**
+	 * Get the line this LineSink plays through.
+	 * @return the line this LineSink plays through
+	 */
+	public SourceDataLine getLine() {
+		return this.line;
+	}
+
+	@Override
+	public void start() {
+		this.line.start();
+	}
+
+	@Override
+	public void stop() {
+		this.line.stop();
+	}
+
+	@Override
+	public void flush() {
+		this.line.flush();
+	}
+
+	@Override
+	public void close() {
+		this.line.close();
+	}
+
+	@Override
+	public int write(byte[] data, int offset, int length) {
+		return this.line.write(data, offset, length);
+	}
+
+	@Override
+	public int available() {
+		return this.line.available();
+	}
+
+	@Override
+	public int getBufferSize() {
+		return this.line.getBufferSize();
+	}
+
+	@Override
+	public long getLongFramePosition() {
+		return this.line.getLongFramePosition();
+	}
+
+}
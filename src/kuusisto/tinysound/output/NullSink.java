@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.output;
+
+import kuusisto.tinysound.TinySound;
+
+/**
+ * The NullSink class is an AudioSink that throws audio data away at the rate
+ * it would be played, behaving like a line to the speakers with a buffer of a
+ * given size.  It is useful for running TinySound on machines without audio
+ * hardware and for measuring the cost of mixing without that of the output.
+ *
+ * @author Finn Kuusisto
+ */
+public class NullSink implements AudioSink {
+
+	private final int frameSize;
+	private final float frameRate;
+	private final int bufferSize;
+	private long framesWritten;
+	private long framesConsumed;
+	private long lastTime; //when consumption was last accounted for
+	private boolean running;
+
+	/**
+	 * Construct a new NullSink.
+	 * @param bufferFrames the number of frames it buffers ahead of what it
+	 * has consumed
+	 */
+	public NullSink(int bufferFrames) {
+		if (bufferFrames <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		this.frameSize = TinySound.FORMAT.getFrameSize();
+		this.frameRate = TinySound.FORMAT.getFrameRate();
+		this.bufferSize = bufferFrames * this.frameSize;
+		this.framesWritten = 0;
+		this.framesConsumed = 0;
+		this.lastTime = 0;
+		this.running = false;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (!this.running) {
+			this.running = true;
+			this.lastTime = System.nanoTime();
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		this.consume();
+		this.running = false;
+	}
+
+	@Override
+	public synchronized void flush() {
+		this.consume();
+		this.framesWritten = this.framesConsumed;
+	}
+
+	@Override
+	public void close() {
+		this.flush();
+	}
+
+	@Override
+	public int write(byte[] data, int offset, int length) {
+		int framesLeft = length / this.frameSize;
+		while (framesLeft > 0) {
+			int numFrames;
+			synchronized (this) {
+				this.consume();
+				numFrames = Math.min(framesLeft, this.freeFrames());
+				this.framesWritten += numFrames;
+			}
+			framesLeft -= numFrames;
+			if (framesLeft > 0) {
+				synchronized (this) {
+					//nothing will make room while stopped
+					if (!this.running) {
+						break;
+					}
+				}
+				//full, wait for some of it to be consumed
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		return length - (framesLeft * this.frameSize);
+	}
+
+	@Override
+	public synchronized int available() {
+		this.consume();
+		return this.freeFrames() * this.frameSize;
+	}
+
+	@Override
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+
+	@Override
+	public synchronized long getLongFramePosition() {
+		this.consume();
+		return this.framesConsumed;
+	}
+
+	/**
+	 * Get the number of frames there is room for in the buffer.  Must hold
+	 * the lock.
+	 * @return the number of frames there is room for
+	 */
+	private int freeFrames() {
+		long queued = this.framesWritten - this.framesConsumed;
+		return (int)((this.bufferSize / this.frameSize) - queued);
+	}
+
+	/**
+	 * Consume however many frames would have played since the last time this
+	 * was called.  Must hold the lock.
+	 */
+	private void consume() {
+		if (!this.running) {
+			return;
+		}
+		long currTime = System.nanoTime();
+		long queued = this.framesWritten - this.framesConsumed;
+		long elapsed = (long)((currTime - this.lastTime) * this.frameRate /
+				1000000000L);
+		if (elapsed >= queued) {
+			//ran dry, the time spent empty doesn't count
+			this.framesConsumed += queued;
+			this.lastTime = currTime;
+		}
+		else {
+			//only move ahead by the time of the whole frames consumed
+			this.framesConsumed += elapsed;
+			this.lastTime += (long)(elapsed * 1000000000L / this.frameRate);
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.output;
+
+import java.util.concurrent.locks.LockSupport;
+
+import kuusisto.tinysound.TinySound;
+import kuusisto.tinysound.internal.ByteRing;
+
+/**
+ * The RingBufferSink class is an AudioSink that hands audio data to another
+ * audio system through a lock-free ring buffer, for embedding TinySound in an
+ * application that has its own output, such as an audio callback.  TinySound
+ * writes into the ring and a single consumer thread reads from it with
+ * {@link #read(byte[], int, int)}, which never blocks or locks, so it is safe
+ * to call from a real-time audio thread.  The consumer sets the pace; when it
+ * falls behind, TinySound waits for room.
+ *
+ * @author Finn Kuusisto
+ */
+public class RingBufferSink implements AudioSink {
+
+	private static final long FULL_WAIT_NANOS = 100000L;
+
+	private final ByteRing ring;
+	private final int frameSize;
+	private volatile boolean flushRequested;
+	private volatile boolean running;
+
+	/**
+	 * Construct a new RingBufferSink.
+	 * @param bufferFrames the number of frames the ring holds, rounded up to
+	 * a power of two
+	 */
+	public RingBufferSink(int bufferFrames) {
+		if (bufferFrames <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		this.frameSize = TinySound.FORMAT.getFrameSize();
+		this.ring = new ByteRing(bufferFrames * this.frameSize);
+		this.flushRequested = false;
+		this.running = false;
+	}
+
+	/**
+	 * Read as much audio data as is available, up to the given length, without
+	 * blocking.  Only a single consumer thread may call this.
+	 * @param data the buffer to read the audio data into
+	 * @param offset the start index to read audio data into
+	 * @param length the maximum number of bytes to read
+	 * @return the number of bytes read, a whole number of frames
+	 */
+	public int read(byte[] data, int offset, int length) {
+		if (this.flushRequested) {
+			this.flushRequested = false;
+			this.ring.clear();
+		}
+		int available = this.ring.available();
+		int numBytes = Math.min(available, length);
+		numBytes -= numBytes % this.frameSize;
+		return this.ring.read(data, offset, numBytes);
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+	}
+
+	/**
+	 * Stop accepting audio data, releasing a writer waiting for room.  Data
+	 * already written can still be read.
+	 */
+	@Override
+	public void stop() {
+		this.running = false;
+	}
+
+	/**
+	 * Throw away any audio data that has been written but not yet read.  Takes
+	 * effect the next time the consumer reads, since only it may move the read
+	 * position.
+	 */
+	@Override
+	public void flush() {
+		this.flushRequested = true;
+	}
+
+	/**
+	 * Stop accepting audio data for good, releasing a writer waiting for room.
+	 */
+	@Override
+	public void close() {
+		this.running = false;
+	}
+
+	@Override
+	public int write(byte[] data, int offset, int length) {
+		int written = 0;
+		while (written < length && this.running) {
+			written += this.ring.write(data, offset + written,
+					length - written);
+			if (written < length) {
+				//full, wait for the consumer to catch up
+				LockSupport.parkNanos(RingBufferSink.FULL_WAIT_NANOS);
+			}
+		}
+		return written;
+	}
+
+	@Override
+	public int available() {
+		return this.ring.free();
+	}
+
+	@Override
+	public int getBufferSize() {
+		return this.ring.capacity();
+	}
+
+	@Override
+	public long getLongFramePosition() {
+		return this.ring.getReadPosition() / this.frameSize;
+	}
+
+}
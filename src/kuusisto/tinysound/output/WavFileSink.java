@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012, Finn Kuusisto
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package kuusisto.tinysound.output;
+
+import java.io.File;
+import java.io.IOException;
+
+import kuusisto.tinysound.TinySound;
+import kuusisto.tinysound.internal.WavWriter;
+
+/**
+ * The WavFileSink class is an AudioSink that records audio data to a WAV file
+ * while consuming it at the rate it would be played, like a NullSink.  The
+ * file holds everything written, and is finished when the WavFileSink is
+ * closed.  To render to a WAV file as fast as possible instead, use
+ * <code>UpdateMode.OFFLINE</code>.
+ *
+ * @author Finn Kuusisto
+ */
+public class WavFileSink extends NullSink {
+
+	private final WavWriter wav;
+	private IOException error;
+	private boolean closed;
+
+	/**
+	 * Construct a new WavFileSink, replacing any existing file.
+	 * @param file the WAV file to write
+	 * @param bufferFrames the number of frames it buffers ahead of what it
+	 * has consumed
+	 * @throws IOException if the file cannot be opened for writing
+	 */
+	public WavFileSink(File file, int bufferFrames) throws IOException {
+		super(bufferFrames);
+		this.wav = new WavWriter(file, TinySound.FORMAT);
+		this.error = null;
+		this.closed = false;
+	}
+
+	/**
+	 * Get the error that stopped recording to the file, if any.
+	 * @return the error that stopped recording, null if there was none
+	 */
+	public synchronized IOException getError() {
+		return this.error;
+	}
+
+	@Override
+	public int write(byte[] data, int offset, int length) {
+		//only record what was accepted, a stop or flush can cut a write short
+		int written = super.write(data, offset, length);
+		synchronized (this) {
+			if (this.error == null && !this.closed && written > 0) {
+				try {
+					this.wav.write(data, offset, written);
+				} catch (IOException e) {
+					//keep playing, just stop recording
+					this.error = e;
+				}
+			}
+		}
+		return written;
+	}
+
+	@Override
+	public synchronized void close() {
+		super.close();
+		this.closed = true;
+		try {
+			this.wav.close();
+		} catch (IOException e) {
+			if (this.error == null) {
+				this.error = e;
+			}
+		}
+	}
+
+}